@@ -0,0 +1,51 @@
+package Utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Connection from the client to the server, used by the client instead of the socket
+ * so the player who created the lobby could talk to the server inside the same program
+ * without the network (see server.LoopbackTransport), other player use the socket
+ * (see SocketClientConnection)
+ * @author Toshiba
+ *
+ */
+public interface ClientConnection {
+
+	/**
+	 * Get the stream of the data sent by the server, closing it close the connection
+	 * @return the input stream
+	 * @throws IOException if the connection is already closed
+	 */
+	InputStream getInputStream() throws IOException;
+
+	/**
+	 * Get the stream to send data to the server, closing it close the connection
+	 * @return the output stream
+	 * @throws IOException if the connection is already closed
+	 */
+	OutputStream getOutputStream() throws IOException;
+
+	/**
+	 * Set how long the blocking read could wait before throwing exception
+	 * @param timeout : time in milliseconds, 0 to wait forever
+	 * @throws IOException if the connection is already closed
+	 */
+	void setReadTimeout(int timeout) throws IOException;
+
+	/**
+	 * Wait until there's data sent by the server or the time passed, used by the
+	 * reader that check available() before reading
+	 * @param timeout : longest time to wait in milliseconds
+	 * @throws InterruptedException if the thread is interrupted when waiting
+	 */
+	void awaitInput(long timeout) throws InterruptedException;
+
+	/**
+	 * Close the connection, the server will remove the player
+	 * @throws IOException if failed to close
+	 */
+	void close() throws IOException;
+}
@@ -0,0 +1,146 @@
+package Utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of the bytes before and after compression (see UtilityProtocol) of one connection,
+ * one room or the whole server, the bytes counted are also counted by the parent counter,
+ * so the connection count to its room (or to the server before joining any room)
+ * and the room count to the server
+ * @author Toshiba
+ *
+ */
+public class CompressionStats {
+
+	// bytes of the instruction sent and received (before compressed or after decompressed)
+	private AtomicLong rawBytesSent = new AtomicLong();
+	private AtomicLong rawBytesReceived = new AtomicLong();
+
+	// bytes really sent to and received from the network
+	private AtomicLong compressedBytesSent = new AtomicLong();
+	private AtomicLong compressedBytesReceived = new AtomicLong();
+
+	// counter that also count the bytes counted by this counter, null if there's none
+	private volatile CompressionStats parent;
+
+	/**
+	 * Constructor for the counter without parent
+	 */
+	public CompressionStats()
+	{
+		this(null);
+	}
+
+	/**
+	 * Constructor for the counter
+	 * @param parent : counter that also count the bytes, null if there's none
+	 */
+	public CompressionStats(CompressionStats parent)
+	{
+		this.parent = parent;
+	}
+
+	/**
+	 * Change the counter that also count the bytes counted after this
+	 * @param parent : the new parent counter, null if there's none
+	 */
+	public void setParent(CompressionStats parent)
+	{
+		this.parent = parent;
+	}
+
+	/**
+	 * Count the bytes of data sent with compression
+	 * @param rawBytes : bytes of the data before compressed
+	 * @param compressedBytes : bytes of the data after compressed
+	 */
+	public void addSent(long rawBytes, long compressedBytes)
+	{
+		this.rawBytesSent.addAndGet(rawBytes);
+		this.compressedBytesSent.addAndGet(compressedBytes);
+
+		CompressionStats parent = this.parent;
+		if (parent != null)
+		{
+			parent.addSent(rawBytes, compressedBytes);
+		}
+	}
+
+	/**
+	 * Count the bytes of data received with compression
+	 * @param compressedBytes : bytes of the data received from the network
+	 * @param rawBytes : bytes of the data after decompressed
+	 */
+	public void addReceived(long compressedBytes, long rawBytes)
+	{
+		this.compressedBytesReceived.addAndGet(compressedBytes);
+		this.rawBytesReceived.addAndGet(rawBytes);
+
+		CompressionStats parent = this.parent;
+		if (parent != null)
+		{
+			parent.addReceived(compressedBytes, rawBytes);
+		}
+	}
+
+	/**
+	 * Get bytes of the data sent before compressed
+	 * @return bytes before compressed
+	 */
+	public long getRawBytesSent()
+	{
+		return this.rawBytesSent.get();
+	}
+
+	/**
+	 * Get bytes of the data sent after compressed
+	 * @return bytes after compressed
+	 */
+	public long getCompressedBytesSent()
+	{
+		return this.compressedBytesSent.get();
+	}
+
+	/**
+	 * Get bytes of the data received after decompressed
+	 * @return bytes after decompressed
+	 */
+	public long getRawBytesReceived()
+	{
+		return this.rawBytesReceived.get();
+	}
+
+	/**
+	 * Get bytes of the data received from the network
+	 * @return bytes before decompressed
+	 */
+	public long getCompressedBytesReceived()
+	{
+		return this.compressedBytesReceived.get();
+	}
+
+	/**
+	 * Get compressed bytes divided by raw bytes of all data (sent and received),
+	 * smaller is better
+	 * @return the ratio, 1 if nothing compressed yet
+	 */
+	public double getRatio()
+	{
+		long raw = this.getRawBytesSent() + this.getRawBytesReceived();
+		if (raw == 0)
+		{
+			return 1;
+		}
+		return (double) (this.getCompressedBytesSent() + this.getCompressedBytesReceived()) / raw;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"sent %d -> %d bytes, received %d -> %d bytes, ratio %.2f",
+				this.getRawBytesSent(), this.getCompressedBytesSent(),
+				this.getCompressedBytesReceived(), this.getRawBytesReceived(), this.getRatio()
+		);
+	}
+}
@@ -0,0 +1,243 @@
+package Utility;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream that decompress the compressed stream of the protocol (see UtilityProtocol)<br>
+ * Not like InflaterInputStream, available() return the real amount of byte that
+ * could be read without blocking (the data that already arrived is decompressed first),
+ * so the reader that wait until there's enough byte still work
+ * @author Toshiba
+ *
+ */
+public class InflatingInputStream extends FilterInputStream {
+
+	// maximum decompressed data waiting to be read, more than this the compressed data
+	// is not decompressed until the data is read (one instruction is never bigger than this)
+	private static final int MAXIMUM_BUFFERED = UtilityProtocol.MAXIMUM_FRAME_LENGTH * 2;
+
+	private Inflater inflater = new Inflater();
+
+	// compressed data read from the stream
+	private byte input[] = new byte[4096];
+
+	// decompressed data, from position until count not yet read
+	private byte output[] = new byte[8192];
+	private int position = 0;
+	private int count = 0;
+
+	// counter of the bytes, null if not counted
+	private CompressionStats stats;
+
+	// true after the stream is closed (the inflater is already ended)
+	private boolean closed = false;
+
+	/**
+	 * Constructor for the stream
+	 * @param in : the compressed stream
+	 * @param stats : counter for the bytes, null if not needed
+	 */
+	public InflatingInputStream(InputStream in, CompressionStats stats)
+	{
+		super(in);
+		this.stats = stats;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		this.fill(false);
+		return this.count - this.position;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (this.position == this.count)
+		{
+			this.fill(true);
+			if (this.position == this.count)
+			{
+				return -1;
+			}
+		}
+		int value = this.output[this.position] & 0xFF;
+		this.position += 1;
+		return value;
+	}
+
+	@Override
+	public int read(byte b[], int off, int len) throws IOException
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		if (this.position == this.count)
+		{
+			this.fill(true);
+			if (this.position == this.count)
+			{
+				return -1;
+			}
+		}
+		int length = Math.min(len, this.count - this.position);
+		System.arraycopy(this.output, this.position, b, off, length);
+		this.position += length;
+		return length;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = 0;
+		while (skipped < n && this.read() >= 0)
+		{
+			skipped += 1;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			super.close();
+		}
+		finally
+		{
+			synchronized (this.inflater)
+			{
+				this.closed = true;
+				this.inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Decompress all compressed data that already arrived
+	 * @param block : true to wait until at least one byte could be read
+	 * (not waiting if the stream is ended)
+	 * @throws IOException if the stream is closed or the data is not valid
+	 */
+	private void fill(boolean block) throws IOException
+	{
+		if (this.position == this.count)
+		{
+			this.position = 0;
+			this.count = 0;
+		}
+
+		try
+		{
+			while (this.count - this.position < MAXIMUM_BUFFERED)
+			{
+				if (this.count == this.output.length)
+				{
+					// move the unread data to the front, or make the buffer bigger
+					if (this.position > 0)
+					{
+						System.arraycopy(this.output, this.position, this.output, 0, this.count - this.position);
+						this.count -= this.position;
+						this.position = 0;
+					}
+					else
+					{
+						byte biggerOutput[] = new byte[this.output.length * 2];
+						System.arraycopy(this.output, 0, biggerOutput, 0, this.count);
+						this.output = biggerOutput;
+					}
+				}
+
+				int length = this.inflate();
+				if (length > 0)
+				{
+					continue;
+				}
+				if (length < 0)
+				{
+					// the other side never end the stream, so this is the end
+					return;
+				}
+
+				// all compressed data is already decompressed, read more if there's any
+				int available = this.in.available();
+				if (available <= 0 && !(block && this.position == this.count))
+				{
+					return;
+				}
+				int read = this.in.read(this.input, 0, Math.max(1, Math.min(available, this.input.length)));
+				if (read < 0)
+				{
+					// end of the stream, read() will return -1 after all data is read
+					return;
+				}
+				synchronized (this.inflater)
+				{
+					this.checkClosed();
+					this.inflater.setInput(this.input, 0, read);
+				}
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Compressed data is not valid", e);
+		}
+	}
+
+	/**
+	 * Decompress the compressed data already given to the inflater to the output buffer
+	 * @return amount of byte decompressed, -1 if the compressed stream is finished
+	 * @throws IOException if the stream is closed or need dictionary
+	 * @throws DataFormatException if the data is not valid
+	 */
+	private int inflate() throws IOException, DataFormatException
+	{
+		// synchronized because the stream could be closed by other thread,
+		// the inflater must not be used after it's ended
+		synchronized (this.inflater)
+		{
+			this.checkClosed();
+			long bytesRead = this.inflater.getBytesRead();
+			int length = this.inflater.inflate(this.output, this.count, this.output.length - this.count);
+			this.count += length;
+			if (this.stats != null)
+			{
+				this.stats.addReceived(this.inflater.getBytesRead() - bytesRead, length);
+			}
+
+			if (length == 0 && this.inflater.finished())
+			{
+				return -1;
+			}
+			if (length == 0 && this.inflater.needsDictionary())
+			{
+				throw new IOException("Compressed data is not valid");
+			}
+			return length;
+		}
+	}
+
+	/**
+	 * Throw exception if the stream is already closed
+	 * @throws IOException if the stream is already closed
+	 */
+	private void checkClosed() throws IOException
+	{
+		if (this.closed)
+		{
+			throw new IOException("Stream closed");
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package Utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Connection from the client to the server through the network (TCP socket)
+ * @author Toshiba
+ *
+ */
+public class SocketClientConnection implements ClientConnection {
+
+	// socket connected to the server
+	private Socket socket;
+
+	/**
+	 * Constructor for the connection
+	 * @param socket : socket connected to the server
+	 */
+	public SocketClientConnection(Socket socket)
+	{
+		this.socket = socket;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException
+	{
+		return this.socket.getInputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException
+	{
+		return this.socket.getOutputStream();
+	}
+
+	@Override
+	public void setReadTimeout(int timeout) throws IOException
+	{
+		this.socket.setSoTimeout(timeout);
+	}
+
+	/**
+	 * The socket can't tell when the data arrived without reading it,
+	 * so just sleep for the time
+	 * @param timeout : time to sleep in milliseconds
+	 */
+	@Override
+	public void awaitInput(long timeout) throws InterruptedException
+	{
+		Thread.sleep(timeout);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.socket.close();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.socket.toString();
+	}
+}
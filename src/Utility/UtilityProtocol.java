@@ -0,0 +1,387 @@
+package Utility;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * Utility class for the wire protocol used by the server and the client<br><br>
+ *
+ * Version 1 (the original one) is code of the instruction followed by its data,
+ * string is sent as integer length followed by the chars (2 byte every char)<br>
+ * Version 2 is code of the instruction, varint length of the data and then the data,
+ * so the whole instruction could be read at once, string is sent as varint length
+ * of the bytes followed by the UTF-8 bytes<br><br>
+ *
+ * The version is negotiated when connecting, client send HELLO_V2 byte as the first byte
+ * and server that support version 2 answer with HELLO_V2 byte (version 1 format)
+ * before the other instruction after it, from that point both side use version 2.
+ * Server that doesn't support it just ignore the byte and the client will know it
+ * when getting the test byte without HELLO_V2<br><br>
+ *
+ * Client could send HELLO_V2_DEFLATE instead of HELLO_V2 to ask version 2 with compression,
+ * server that agree answer with HELLO_V2_DEFLATE (or HELLO_V2 for version 2 without compression),
+ * every byte after the answer (both side) is deflate stream (zlib format), every batch of frames
+ * is ended with sync flush so the other side could read it without waiting the next data<br><br>
+ *
+ * Drawing in version 2 is sent with STROKE instruction instead of code 10 and 11, the data
+ * is list of stroke record, every record begin with varint header:<br>
+ * - lowest bit 0 : point, header is zig-zag x difference from the last point shifted 1 bit,
+ * followed by zig-zag varint y difference<br>
+ * - lowest bits 01 : start of the stroke, header is thickness shifted 2 bit, followed by
+ * red, green, blue (1 byte each) and zig-zag varint x and y of the first point<br>
+ * - lowest bits 11 : end of the stroke (released mouse)<br><br>
+ *
+ * One server could host many room, client send JOIN_ROOM with the join code of the room
+ * before its name, the room is created if there's no room with the code. Client that
+ * send its name without JOIN_ROOM join the default room. If the game inside the room is
+ * already started, server send -2 (denied) even after -1 and close the connection<br><br>
+ *
+ * In version 2 the time of the turn is not sent every 0.5 seconds (code 6), server send
+ * TURN_DEADLINE once when the turn started and the client count down by itself. The test
+ * byte (code 0) sent by the server in version 2 contain the server time (long, milliseconds
+ * since epoch) so the client could know the difference between its clock and the server clock,
+ * followed by varint sequence number. Client send back code 0 with the same time and sequence
+ * number so the server could count the round trip time of the player (see RttEstimator), the
+ * round trip time of every player inside the room is sent with PLAYER_LATENCY<br><br>
+ *
+ * In version 1 the player is sent as their index in the room (code 1, 2, 3, 7 and 9), after
+ * a player left every player after them get index - 1 so both side must shift the same way.
+ * In version 2 the same integer is the player ID instead, given when the player joined the
+ * room and never changed or given to other player, PLAYER_LATENCY use the ID too
+ * @author Toshiba
+ *
+ */
+public class UtilityProtocol {
+
+	// version of the protocol
+	public static final int VERSION_1 = 1;
+	public static final int VERSION_2 = 2;
+
+	// code of the instruction to ask and to accept protocol version 2
+	public static final byte HELLO_V2 = 14;
+
+	// code of the instruction to ask and to accept protocol version 2 with compression
+	public static final byte HELLO_V2_DEFLATE = 16;
+
+	// compression level of the deflate stream, the frames are small and sent very often
+	// so it's better to be fast than to be small
+	public static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+	// code of the instruction containing stroke record (version 2 only)
+	public static final byte STROKE = 15;
+
+	// code of the instruction containing join code of the room the player want to join
+	// (version 2 only, client to server)
+	public static final byte JOIN_ROOM = 17;
+
+	// code of the instruction containing the time when the current turn is ended
+	// (server time, long milliseconds since epoch) and the duration of the turn
+	// (int milliseconds), version 2 only, server to client
+	public static final byte TURN_DEADLINE = 18;
+
+	// code of the instruction containing the round trip time of the player inside the room,
+	// varint amount of player followed by varint player ID and varint round trip time
+	// (milliseconds) of every player, version 2 only, server to client
+	public static final byte PLAYER_LATENCY = 19;
+
+	/**
+	 * Receiver of the stroke record read by readStroke, the point is already
+	 * changed from difference to the real coordinate
+	 */
+	public interface StrokeHandler {
+
+		/**
+		 * Start of new stroke (the first point of the line)
+		 * @param thickness : thickness of the line
+		 * @param red : red value of the color
+		 * @param green : green value of the color
+		 * @param blue : blue value of the color
+		 * @param x : x coordinate
+		 * @param y : y coordinate
+		 * @throws IOException if failed to handle the stroke
+		 */
+		default void strokeStart(int thickness, int red, int green, int blue, int x, int y) throws IOException
+		{
+
+		}
+
+		/**
+		 * Next point of the current stroke
+		 * @param x : x coordinate
+		 * @param y : y coordinate
+		 * @throws IOException if failed to handle the stroke
+		 */
+		default void strokePoint(int x, int y) throws IOException
+		{
+
+		}
+
+		/**
+		 * End of the current stroke
+		 * @throws IOException if failed to handle the stroke
+		 */
+		default void strokeEnd() throws IOException
+		{
+
+		}
+	}
+
+	// maximum length of data of one instruction, more than this is
+	// not a valid instruction (longest instruction is chat, not more than 2 KB)
+	public static final int MAXIMUM_FRAME_LENGTH = 65536;
+
+	/**
+	 * Create the frame to be sent from the instruction (code and the data)
+	 * @param instruction : array containing code of instruction followed by its data
+	 * @param length : length of the instruction inside the array
+	 * @param version : protocol version used by the connection
+	 * @return new array containing the frame
+	 */
+	public static byte[] toFrame(byte instruction[], int length, int version)
+	{
+		if (version == VERSION_1 || length == 0)
+		{
+			// version 1 doesn't have length
+			byte frame[] = new byte[length];
+			System.arraycopy(instruction, 0, frame, 0, length);
+			return frame;
+		}
+
+		// code, length of data, then the data
+		int dataLength = length - 1;
+		int lengthSize = getVarIntSize(dataLength);
+		byte frame[] = new byte[1 + lengthSize + dataLength];
+		frame[0] = instruction[0];
+		putVarInt(frame, 1, dataLength);
+		System.arraycopy(instruction, 1, frame, 1 + lengthSize, dataLength);
+		return frame;
+	}
+
+	/**
+	 * Get amount of byte needed by varint
+	 * @param value : the value (must not negative)
+	 * @return amount of byte (1 until 5)
+	 */
+	public static int getVarIntSize(int value)
+	{
+		int size = 1;
+		while ((value & ~0x7F) != 0)
+		{
+			value >>>= 7;
+			size += 1;
+		}
+		return size;
+	}
+
+	/**
+	 * Put varint to the array, 7 bit every byte, the highest bit tell there's still next byte
+	 * @param array : the array
+	 * @param offset : first index for the varint
+	 * @param value : the value
+	 * @return index after the varint
+	 */
+	public static int putVarInt(byte array[], int offset, int value)
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			array[offset] = (byte) ((value & 0x7F) | 0x80);
+			offset += 1;
+			value >>>= 7;
+		}
+		array[offset] = (byte) value;
+		return offset + 1;
+	}
+
+	/**
+	 * Write varint to the output
+	 * @param out : the output
+	 * @param value : the value
+	 * @throws IOException if failed to write
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read varint from the input
+	 * @param in : the input
+	 * @return the value
+	 * @throws IOException if failed to read or the varint is too long
+	 */
+	public static int readVarInt(DataInput in) throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Varint too long");
+	}
+
+	/**
+	 * Change signed value to unsigned value so small negative value stay small in varint
+	 * (0, -1, 1, -2, 2, ... become 0, 1, 2, 3, 4, ...)
+	 * @param value : signed value
+	 * @return zig-zag value
+	 */
+	public static int encodeZigZag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * Change zig-zag value back to signed value
+	 * @param value : zig-zag value
+	 * @return signed value
+	 */
+	public static int decodeZigZag(int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Write stroke record for the start of the stroke
+	 * @param out : the output
+	 * @param thickness : thickness of the line
+	 * @param red : red value of the color
+	 * @param green : green value of the color
+	 * @param blue : blue value of the color
+	 * @param x : x coordinate of the first point
+	 * @param y : y coordinate of the first point
+	 * @throws IOException if failed to write
+	 */
+	public static void writeStrokeStart(DataOutput out, int thickness, int red, int green, int blue, int x, int y) throws IOException
+	{
+		writeVarInt(out, (thickness << 2) | 1);
+		out.writeByte(red);
+		out.writeByte(green);
+		out.writeByte(blue);
+		writeVarInt(out, encodeZigZag(x));
+		writeVarInt(out, encodeZigZag(y));
+	}
+
+	/**
+	 * Write stroke record for the next point of the stroke
+	 * @param out : the output
+	 * @param differenceX : x coordinate minus x coordinate of the last point
+	 * @param differenceY : y coordinate minus y coordinate of the last point
+	 * @throws IOException if failed to write
+	 */
+	public static void writeStrokePoint(DataOutput out, int differenceX, int differenceY) throws IOException
+	{
+		writeVarInt(out, encodeZigZag(differenceX) << 1);
+		writeVarInt(out, encodeZigZag(differenceY));
+	}
+
+	/**
+	 * Write stroke record for the end of the stroke
+	 * @param out : the output
+	 * @throws IOException if failed to write
+	 */
+	public static void writeStrokeEnd(DataOutput out) throws IOException
+	{
+		writeVarInt(out, 3);
+	}
+
+	/**
+	 * Read all stroke record until the end of the data
+	 * @param in : data of the STROKE instruction
+	 * @param lastPoint : coordinate of the last point (x, y), updated after every record
+	 * @param handler : receiver of the record
+	 * @throws IOException if the data is not valid or the handler failed
+	 */
+	public static void readStroke(DataInputStream in, int lastPoint[], StrokeHandler handler) throws IOException
+	{
+		while (in.available() > 0)
+		{
+			int header = readVarInt(in);
+			if ((header & 1) == 0)
+			{
+				lastPoint[0] += decodeZigZag(header >>> 1);
+				lastPoint[1] += decodeZigZag(readVarInt(in));
+				handler.strokePoint(lastPoint[0], lastPoint[1]);
+			}
+			else if ((header & 3) == 1)
+			{
+				int red = in.readUnsignedByte();
+				int green = in.readUnsignedByte();
+				int blue = in.readUnsignedByte();
+				lastPoint[0] = decodeZigZag(readVarInt(in));
+				lastPoint[1] = decodeZigZag(readVarInt(in));
+				handler.strokeStart(header >>> 2, red, green, blue, lastPoint[0], lastPoint[1]);
+			}
+			else
+			{
+				handler.strokeEnd();
+			}
+		}
+	}
+
+	/**
+	 * Write string with the format of the protocol version
+	 * @param out : the output
+	 * @param text : the string
+	 * @param version : protocol version used by the connection
+	 * @throws IOException if failed to write
+	 */
+	public static void writeString(DataOutput out, String text, int version) throws IOException
+	{
+		if (version == VERSION_1)
+		{
+			out.writeInt(text.length());
+			out.writeChars(text);
+		}
+		else
+		{
+			byte bytes[] = text.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Read string with the format of the protocol version, the whole string is read at once
+	 * @param in : the input
+	 * @param version : protocol version used by the connection
+	 * @return the string
+	 * @throws IOException if failed to read or the length is not valid
+	 */
+	public static String readString(DataInput in, int version) throws IOException
+	{
+		if (version == VERSION_1)
+		{
+			int length = in.readInt();
+			if (length < 0 || length > MAXIMUM_FRAME_LENGTH / 2)
+			{
+				throw new IOException("String too long");
+			}
+			byte bytes[] = new byte[length * 2];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_16BE);
+		}
+
+		int length = readVarInt(in);
+		if (length < 0 || length > MAXIMUM_FRAME_LENGTH)
+		{
+			throw new IOException("String too long");
+		}
+		byte bytes[] = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
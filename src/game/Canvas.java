@@ -4,9 +4,12 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.util.List;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /**
  * Custom JPanel act as canvas where the player could draw their image
@@ -19,9 +22,36 @@ public class Canvas extends JPanel {
 	// generate serial number
 	private static final long serialVersionUID = 7632832569233507551L;
 	
-	// array of integer that used to store code (in form of integer)
-	// that will be translated to image and drawn 
-	private List<Integer> image;
+	// view of the code (in form of integer) that will be translated to image and drawn,
+	// the view is updated for every repaint without locking the code
+	private StrokeBuffer.Reader image;
+	
+	// the image already drawn from the code, only the code added after the last
+	// repaint is drawn to it, only used by the repaint
+	private BufferedImage raster = null;
+	
+	// position of the first code not yet drawn to the raster, and the line being drawn
+	// at that position (last point, thickness and color), clearRequested
+	// is true if the raster must be cleared on the next repaint
+	private int drawnCodes = 0;
+	private int prevX = -1;
+	private int prevY = -1;
+	private int thickness = 1;
+	private Color color = Color.BLACK;
+	private volatile boolean clearRequested = false;
+	
+	// area of the raster changed by the last drawNewCodes, nothing changed if dirtyMaxX < dirtyMinX
+	private int dirtyMinX = 0;
+	private int dirtyMinY = 0;
+	private int dirtyMaxX = -1;
+	private int dirtyMaxY = -1;
+	
+	// the new line is not repainted for every point, the point arrived within one display
+	// frame (60 frame per second) is drawn together by frameTimer and only the area
+	// of the new line is repainted, frameRequested is true if frameTimer is already started
+	private static final int FRAME_INTERVAL = 16;
+	private Timer frameTimer;
+	private AtomicBoolean frameRequested = new AtomicBoolean(false);
 	
 	// list of basic stroke for the Graphics2D used to draw line
 	// and image with length of 10, consisting brush with width 1 to 10
@@ -40,18 +70,39 @@ public class Canvas extends JPanel {
 	};
 	
 	/**
-	 * Constructor for the canvas with parameter list of integer
-	 * that will translated to become an image, remember the list
-	 * will not copied but will store memory location of the passed
-	 * list of integer, so changing it outside this class will change
+	 * Constructor for the canvas with parameter buffer of integer
+	 * that will translated to become an image, remember the buffer
+	 * will not copied, so adding code to it outside this class will change
 	 * the image too, by this definition, the changing of image
-	 * will happen outside of this class just by adding or removing
-	 * some value from the list
-	 * @param image
+	 * will happen outside of this class just by adding or clearing
+	 * some value from the buffer
+	 * @param image : code of the image
 	 */
-	public Canvas(List<Integer> image)
+	public Canvas(StrokeBuffer image)
 	{
-		this.image = image;
+		this.image = new StrokeBuffer.Reader(image);
+		
+		this.frameTimer = new Timer(FRAME_INTERVAL, e -> {
+			this.frameRequested.set(false);
+			Rectangle changed = this.updateRaster();
+			if (changed != null)
+			{
+				this.repaint(changed);
+			}
+		});
+		this.frameTimer.setRepeats(false);
+	}
+	
+	/**
+	 * Ask the canvas to show the code added to the image, could be called from any thread,
+	 * every call within one display frame is repainted together
+	 */
+	public void repaintNewCodes()
+	{
+		if (this.frameRequested.compareAndSet(false, true))
+		{
+			this.frameTimer.start();
+		}
 	}
 	
 	@Override
@@ -61,36 +112,146 @@ public class Canvas extends JPanel {
 		
 		// override the paintComponent so the class
 		// could draw the image from translating the
-		// list of integer pass in constructor
+		// buffer of integer pass in constructor
+		//
+		// the code is not translated again for every repaint, the line is drawn once to
+		// the buffered image (raster) when it arrived and the repaint just copy the raster
+		// to the screen, so the time to repaint is the same for short and long drawing
+		Rectangle changed = this.updateRaster();
+		if (this.raster == null)
+		{
+			return;
+		}
+		g.drawImage(this.raster, 0, 0, null);
 		
-		// change to Graphics2D to make it possible using BasicStroke
-		// to change the width of the line
-		Graphics2D brush = (Graphics2D) g;
+		// the area changed outside the area repainted now must be repainted too
+		Rectangle clip = g.getClipBounds();
+		if (changed != null && clip != null && !clip.contains(changed))
+		{
+			this.repaint(changed);
+		}
+	}
+	
+	/**
+	 * Draw the code not yet drawn to the raster, the raster is cleared first if
+	 * the code is cleared, must be called by the event dispatch thread
+	 * @return area of the canvas changed, null if nothing changed
+	 */
+	private Rectangle updateRaster()
+	{
+		boolean cleared = this.image.update();
+		if (this.getWidth() <= 0 || this.getHeight() <= 0)
+		{
+			return null;
+		}
 		
-		// coordinate of the previous point
-		// if value is negative, that means there is no previous point
-		int prevX = -1;
-		int prevY = -1;
+		boolean wholeChanged = false;
+		if (this.raster == null || this.raster.getWidth() != this.getWidth() || this.raster.getHeight() != this.getHeight())
+		{
+			// first repaint or the size of the canvas changed, the whole code is drawn again
+			this.raster = new BufferedImage(this.getWidth(), this.getHeight(), BufferedImage.TYPE_INT_RGB);
+			this.clearRaster();
+			wholeChanged = true;
+		}
+		else if (cleared || this.clearRequested)
+		{
+			// the code is cleared (next turn), the old image must be removed
+			this.clearRaster();
+			wholeChanged = true;
+		}
+		this.drawNewCodes();
 		
-		// coordinate of the current point
-		// if value is negative, that means there is no previous point
-		int x = -1;
-		int y = -1;
+		if (wholeChanged)
+		{
+			return new Rectangle(0, 0, this.raster.getWidth(), this.raster.getHeight());
+		}
+		if (this.dirtyMaxX < this.dirtyMinX)
+		{
+			return null;
+		}
+		return new Rectangle(this.dirtyMinX, this.dirtyMinY, this.dirtyMaxX - this.dirtyMinX + 1, this.dirtyMaxY - this.dirtyMinY + 1);
+	}
+	
+	/**
+	 * Add the point with the thickness of the line to the changed area
+	 * @param x : x coordinate
+	 * @param y : y coordinate
+	 */
+	private void markDirty(int x, int y)
+	{
+		// the square end of the stroke could go further than half of the thickness
+		// when the line is diagonal (up to half of the diagonal of the square)
+		int margin = this.thickness + 1;
+		if (this.dirtyMaxX < this.dirtyMinX)
+		{
+			this.dirtyMinX = x - margin;
+			this.dirtyMinY = y - margin;
+			this.dirtyMaxX = x + margin;
+			this.dirtyMaxY = y + margin;
+			return;
+		}
+		this.dirtyMinX = Math.min(this.dirtyMinX, x - margin);
+		this.dirtyMinY = Math.min(this.dirtyMinY, y - margin);
+		this.dirtyMaxX = Math.max(this.dirtyMaxX, x + margin);
+		this.dirtyMaxY = Math.max(this.dirtyMaxY, y + margin);
+	}
+	
+	/**
+	 * Remove the image, used when the code is cleared (the turn is over),
+	 * the code is drawn again from the start on the next repaint
+	 */
+	public void clearImage()
+	{
+		this.clearRequested = true;
+		this.repaint();
+	}
+	
+	/**
+	 * Fill the raster with the background color and start drawing the code from the start
+	 */
+	private void clearRaster()
+	{
+		Graphics2D brush = this.raster.createGraphics();
+		brush.setColor(this.getBackground());
+		brush.fillRect(0, 0, this.raster.getWidth(), this.raster.getHeight());
+		brush.dispose();
 		
-		int thickness = 0; // thickness of the line
+		this.clearRequested = false;
+		this.drawnCodes = 0;
+		this.prevX = -1;
+		this.prevY = -1;
+		this.thickness = 1;
+		this.color = Color.BLACK;
+	}
+	
+	/**
+	 * Draw the code added after the last repaint to the raster, the area
+	 * changed is saved to the dirty area
+	 */
+	private void drawNewCodes()
+	{
+		this.dirtyMinX = 0;
+		this.dirtyMinY = 0;
+		this.dirtyMaxX = -1;
+		this.dirtyMaxY = -1;
+		if (this.drawnCodes >= this.image.size())
+		{
+			return;
+		}
 		
+		// change to Graphics2D to make it possible using BasicStroke
+		// to change the width of the line
+		Graphics2D brush = this.raster.createGraphics();
+		brush.setColor(this.color);
+		brush.setStroke(stroke[this.thickness - 1]);
 		
-		// So a brief explanation how the list of integer translated to image
-		// this algorithm isn't efficient, because this is the first algorithm 
-		// that come to my brain, which i find the faster way by using BufferedImage
-		// to draw the image faster, but no time to change it (exam is near)
-		//
-		// SO, the algorithm is actually the list of integer is storing thickness,
-		// color RGB, and coordinate of a point of line. The image was actually just
-		// bunch of point of a line, the list start with -1 at start, -1 is used to
-		// tell that a line is already end, so when finding -1, that means the
-		// canvas must make new line, first by taking 4 integer right next the
-		// -1 index, the next one is the thickness, and the three next again is
+		// So a brief explanation how the buffer of integer translated to image
+		// 
+		// the buffer of integer is storing thickness, color RGB, and coordinate of a point
+		// of line. The image was actually just bunch of point of a line, the buffer start
+		// with -1 at start, -1 is used to tell that a line is already end, so when finding
+		// -1, that means the canvas must make new line, first by taking 4 integer right
+		// next the -1 index, the next one is the thickness, and the three next again is
 		// the color of the line, and then there's bunch of pair coordinate of the
 		// point of line (x, y)
 		// Confusing? So here's example
@@ -115,54 +276,59 @@ public class Canvas extends JPanel {
 		// points (0, 1), (1, 2), (4, 5), (8, 4), then creating straight line between point
 		//
 		// [-1, 4, 255, 88, 221, 0, 1, 1, 2, 4, 5, 8, 4, {-1}, 3, 0, 0, 0, 10, 4, 5, 8]
-		// then reading the next -1 one, means creating new line, and repeat for the whole list
-		// algorithm is not efficient, maybe will improved if there's time and moti
-		synchronized (this.image) 
+		// then reading the next -1 one, means creating new line, and repeat for the whole buffer
+		//
+		// the reading stop before the code that is not complete yet (the start of the line
+		// without its color or x without y), the rest is read on the next repaint
+		int i = this.drawnCodes;
+		while (i < this.image.size())
 		{
-			
-			for (int i = 0; i < this.image.size(); i++)
+			if (this.image.get(i) == -1)
 			{
-				if (this.image.get(i) == -1)
+				if (i + 4 >= this.image.size())
+				{
+					break;
+				}
+				int red = this.image.get(i+2);
+				int green = this.image.get(i+3);
+				int blue = this.image.get(i+4);
+				if (this.color.getRed() != red || this.color.getGreen() != green || this.color.getBlue() != blue)
+				{
+					this.color = new Color(red, green, blue);
+				}
+				brush.setColor(this.color);
+				this.thickness = this.image.get(i+1);
+				brush.setStroke(stroke[this.thickness - 1]);
+				this.prevX = -1;
+				this.prevY = -1;
+				i = i + 5;
+			}
+			else
+			{
+				if (i + 1 >= this.image.size())
+				{
+					break;
+				}
+				int x = this.image.get(i) - 304;
+				int y = this.image.get(i+1) - 144;
+				
+				if (this.prevX >= 0 && this.prevY >= 0 && x >= 0 && y >= 0)
 				{
-					if (i + 4 < this.image.size())
-					{
-						brush.setColor(
-								new Color(
-										this.image.get(i+2), this.image.get(i+3), this.image.get(i+4)
-								)
-						);
-						thickness = this.image.get(i+1);
-						brush.setStroke(stroke[thickness - 1]);
-					}
-					x = -1;
-					y = -1;
-					prevX = -1;
-					prevY = -1;
-					i = i + 4;
+					brush.drawLine(this.prevX, this.prevY, x, y);
+					this.markDirty(this.prevX, this.prevY);
 				}
-				else
+				if (x >= 0 && y >= 0)
 				{
-					if (i + 1 < this.image.size())
-					{
-						x = this.image.get(i) - 304;
-						y = this.image.get(i+1) - 144;
-						
-						if (prevX >= 0 && prevY >= 0 && x >= 0 && y >= 0)
-						{
-							brush.drawLine(prevX, prevY, x, y);
-						}
-						if (x >= 0 && y >= 0)
-						{
-							brush.fillOval(x - thickness/2, y - thickness/2, thickness, thickness);
-						}
-						prevX = x;
-						prevY = y;
-						
-					}
-					i = i + 1;
+					brush.fillOval(x - this.thickness/2, y - this.thickness/2, this.thickness, this.thickness);
+					this.markDirty(x, y);
 				}
+				this.prevX = x;
+				this.prevY = y;
+				i = i + 2;
 			}
 		}
+		this.drawnCodes = i;
+		brush.dispose();
 	}
 	
 }
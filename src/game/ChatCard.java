@@ -1,18 +1,22 @@
 package game;
 
+import java.awt.Component;
 import java.awt.Font;
 
-import javax.swing.BorderFactory;
-import javax.swing.BoxLayout;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.ListCellRenderer;
 
 /**
- * UI for chat to be shown in chat panel
+ * UI for chat to be shown in chat list, one card draw every chat shown by the JList
+ * (see ChatList), the card has fixed size so the JList doesn't need to measure the chat<br>
+ * The chat is shown as plain text in two line (name of the player then the chat), the
+ * text too long for the card is cut with "..."
  * @author Toshiba
  *
  */
-public class ChatCard extends JPanel{
+public class ChatCard extends JPanel implements ListCellRenderer<ChatMessage> {
 
 	// generated serial number
 	private static final long serialVersionUID = -3775899067346478406L;
@@ -20,20 +24,101 @@ public class ChatCard extends JPanel{
 	// font for every chat card, including broadcast from server
 	private static Font fontForAllChatCard = new Font("Comic Sans MS", Font.BOLD, 14);
 
+	// margin of the card
+	private static final int MARGIN_X = 4;
+	private static final int MARGIN_Y = 8;
+
+	// label for the name of the player and the chat, the broadcast is shown by the chat label
+	private JLabel playerLabel = new CardLabel();
+	private JLabel chatLabel = new CardLabel();
+
+	// size of the card and one line of text inside it
+	private int width;
+	private int lineHeight;
+
+	/**
+	 * Constructor of the chat card
+	 * @param width : width of the card
+	 */
+	public ChatCard(int width)
+	{
+		this.setLayout(null);
+		this.setOpaque(false);
+
+		this.width = width;
+		this.lineHeight = this.getFontMetrics(fontForAllChatCard).getHeight();
+		this.setSize(width, this.getCardHeight());
+
+		// the chat is written by the player, never read it as HTML
+		for (JLabel label : new JLabel[] {this.playerLabel, this.chatLabel})
+		{
+			label.setFont(fontForAllChatCard);
+			label.putClientProperty("html.disable", Boolean.TRUE);
+			this.add(label);
+		}
+	}
+
 	/**
-	 * Constructor of the chat chat
-	 * @param text : text to be shown in the chat card
+	 * Get height of every card
+	 * @return height of the card
 	 */
-	public ChatCard(String text)
+	public int getCardHeight()
 	{
-		this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
-	
-		// creating margin by creating empty border
-		this.setBorder(BorderFactory.createEmptyBorder(8, 4, 8, 4));
-		
-		JLabel chatLabel = new JLabel(text);
-		chatLabel.setFont(fontForAllChatCard );
-		chatLabel.setBackground(null);
-		this.add(chatLabel);
+		return this.lineHeight * 2 + MARGIN_Y * 2;
+	}
+
+	@Override
+	public Component getListCellRendererComponent(JList<? extends ChatMessage> list, ChatMessage chat,
+			int index, boolean isSelected, boolean cellHasFocus)
+	{
+		int textWidth = this.width - MARGIN_X * 2;
+		if (chat.isBroadcast())
+		{
+			// broadcast, show the whole text in the middle of the card
+			this.playerLabel.setText("");
+			this.chatLabel.setText(chat.getText());
+			this.chatLabel.setBounds(MARGIN_X, MARGIN_Y, textWidth, this.lineHeight * 2);
+		}
+		else
+		{
+			// show chat with their player name
+			this.playerLabel.setText(chat.getPlayer() + ":");
+			this.playerLabel.setBounds(MARGIN_X, MARGIN_Y, textWidth, this.lineHeight);
+			this.chatLabel.setText(chat.getText());
+			this.chatLabel.setBounds(MARGIN_X, MARGIN_Y + this.lineHeight, textWidth, this.lineHeight);
+		}
+		return this;
+	}
+
+	/**
+	 * Label inside the card, only painted by the JList, so nothing to layout or
+	 * repaint when the text is changed (like DefaultListCellRenderer)
+	 */
+	private static class CardLabel extends JLabel {
+
+		// generated serial number
+		private static final long serialVersionUID = 2958004412655371146L;
+
+		@Override
+		public void revalidate()
+		{
+
+		}
+
+		@Override
+		public void repaint(long time, int x, int y, int width, int height)
+		{
+
+		}
+
+		@Override
+		protected void firePropertyChange(String propertyName, Object oldValue, Object newValue)
+		{
+			// the text is still needed by the UI of the label
+			if (propertyName == "text")
+			{
+				super.firePropertyChange(propertyName, oldValue, newValue);
+			}
+		}
 	}
 }
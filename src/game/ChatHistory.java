@@ -0,0 +1,121 @@
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * The last chat of the chat list, kept inside a ring buffer so adding new chat
+ * never copy the older chat, when it's full the oldest chat is forgotten<br>
+ * Used as the model of the JList inside ChatList, must be used on Event Dispatcher Thread
+ * @author Toshiba
+ *
+ */
+public class ChatHistory extends AbstractListModel<ChatMessage> {
+
+	// generated serial version
+	private static final long serialVersionUID = 5326150779374181624L;
+
+	// amount of chat kept by every chat list, taken from system
+	// property skribbl.client.chatHistory (default 256)
+	public static final String PROPERTY_CAPACITY = "skribbl.client.chatHistory";
+
+	// the chat, oldest chat is at position start and the chat after it follow (wrapped
+	// to the start of the array), only the first size chat from start is used
+	private ChatMessage chats[];
+	private int start = 0;
+	private int size = 0;
+
+	/**
+	 * Constructor for the history, capacity taken from system property skribbl.client.chatHistory
+	 */
+	public ChatHistory()
+	{
+		this(Integer.getInteger(PROPERTY_CAPACITY, 256));
+	}
+
+	/**
+	 * Constructor for the history
+	 * @param capacity : maximum amount of chat kept
+	 */
+	public ChatHistory(int capacity)
+	{
+		this.chats = new ChatMessage[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Add the new chat at the end, the oldest chat is removed if there's no space
+	 * @param newChats : the new chat, oldest first
+	 */
+	public void add(List<ChatMessage> newChats)
+	{
+		if (newChats.isEmpty())
+		{
+			return;
+		}
+
+		int oldSize = this.size;
+		int removed = 0;
+		for (ChatMessage chat : newChats)
+		{
+			if (this.size == this.chats.length)
+			{
+				// replace the oldest chat
+				this.chats[this.start] = chat;
+				this.start = (this.start + 1) % this.chats.length;
+				removed += 1;
+			}
+			else
+			{
+				this.chats[(this.start + this.size) % this.chats.length] = chat;
+				this.size += 1;
+			}
+		}
+
+		// tell the JList once for the whole batch, the old chat still shown are
+		// the old chat not removed, the rest is new
+		removed = Math.min(removed, oldSize);
+		if (removed > 0)
+		{
+			this.fireIntervalRemoved(this, 0, removed - 1);
+		}
+		this.fireIntervalAdded(this, oldSize - removed, this.size - 1);
+	}
+
+	/**
+	 * Remove all chat
+	 */
+	public void clear()
+	{
+		int oldSize = this.size;
+		Arrays.fill(this.chats, null);
+		this.start = 0;
+		this.size = 0;
+		if (oldSize > 0)
+		{
+			this.fireIntervalRemoved(this, 0, oldSize - 1);
+		}
+	}
+
+	/**
+	 * Get maximum amount of chat kept
+	 * @return the capacity
+	 */
+	public int getCapacity()
+	{
+		return this.chats.length;
+	}
+
+	@Override
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	@Override
+	public ChatMessage getElementAt(int index)
+	{
+		return this.chats[(this.start + index) % this.chats.length];
+	}
+}
@@ -0,0 +1,100 @@
+package game;
+
+import java.awt.Insets;
+import java.util.List;
+
+import javax.swing.JList;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Scrollable chat list used by lobby view and game view<br>
+ * Only the chat visible on the screen is drawn (by one ChatCard), every chat has the same
+ * height so adding chat doesn't need to measure or layout the older chat, and only the
+ * last chat is kept (see ChatHistory), so the cost of one chat is the same for the whole game
+ * @author Toshiba
+ *
+ */
+public class ChatList extends JScrollPane {
+
+	// generated serial version
+	private static final long serialVersionUID = 2177360874893301726L;
+
+	// the chat shown by the list
+	private ChatHistory history = new ChatHistory();
+	private JList<ChatMessage> list = new JList<ChatMessage>(this.history);
+
+	// runnable to be run on the Event Dispatcher Thread for auto scroll when there's
+	// chat added to the list if the chat list already at the bottom
+	private Runnable autoScrollRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			int last = history.getSize() - 1;
+			if (last >= 0)
+			{
+				list.ensureIndexIsVisible(last);
+			}
+		}
+	};
+
+	/**
+	 * Constructor for the chat list
+	 * @param width : width of the list
+	 * @param height : height of the list
+	 */
+	public ChatList(int width, int height)
+	{
+		this.setSize(width, height);
+		this.setHorizontalScrollBarPolicy(HORIZONTAL_SCROLLBAR_NEVER);
+		this.setVerticalScrollBarPolicy(VERTICAL_SCROLLBAR_ALWAYS);
+		this.getVerticalScrollBar().setUnitIncrement(16);
+
+		// the card fill the width of the list (without the border and the scroll bar)
+		Insets border = this.getInsets();
+		int cardWidth = width - border.left - border.right - this.getVerticalScrollBar().getPreferredSize().width;
+		ChatCard chatCard = new ChatCard(cardWidth);
+		this.list.setCellRenderer(chatCard);
+		this.list.setFixedCellWidth(cardWidth);
+		this.list.setFixedCellHeight(chatCard.getCardHeight());
+		this.list.setFocusable(false);
+		this.list.setBackground(this.getBackground());
+		this.setViewportView(this.list);
+	}
+
+	/**
+	 * Add chat at the end of the list, must be called on Event Dispatcher Thread
+	 * @param chats : new chat, oldest first
+	 */
+	public void addChat(List<ChatMessage> chats)
+	{
+		JScrollBar chatScroll = this.getVerticalScrollBar();
+		boolean atBottom = chatScroll.getValue() + chatScroll.getVisibleAmount() >= chatScroll.getMaximum();
+
+		this.history.add(chats);
+
+		// auto scroll down if the scroll bar at the bottom
+		if (atBottom)
+		{
+			SwingUtilities.invokeLater(this.autoScrollRunnable);
+		}
+	}
+
+	/**
+	 * Remove all chat from the list
+	 */
+	public void clear()
+	{
+		this.history.clear();
+	}
+
+	/**
+	 * Get the chat shown by the list
+	 * @return the chat
+	 */
+	public ChatHistory getHistory()
+	{
+		return this.history;
+	}
+}
@@ -0,0 +1,62 @@
+package game;
+
+/**
+ * One line of the chat list, chat from the player or broadcast from the server
+ * @author Toshiba
+ *
+ */
+public class ChatMessage {
+
+	// name of the player who send the chat, null for broadcast
+	private String player;
+
+	// text of the chat or the broadcast
+	private String text;
+
+	/**
+	 * Constructor for the chat from the player
+	 * @param player : name of the player who send the chat
+	 * @param text : text of the chat
+	 */
+	public ChatMessage(String player, String text)
+	{
+		this.player = player;
+		this.text = text;
+	}
+
+	/**
+	 * Constructor for the broadcast from the server
+	 * @param text : text of the broadcast
+	 */
+	public ChatMessage(String text)
+	{
+		this(null, text);
+	}
+
+	/**
+	 * Get name of the player who send the chat
+	 * @return name of the player, null if it's broadcast
+	 */
+	public String getPlayer()
+	{
+		return this.player;
+	}
+
+	/**
+	 * Get the text of the chat
+	 * @return text of the chat or the broadcast
+	 */
+	public String getText()
+	{
+		return this.text;
+	}
+
+	/**
+	 * Check if the chat is broadcast from the server
+	 * @return true if it's broadcast
+	 */
+	public boolean isBroadcast()
+	{
+		return this.player == null;
+	}
+}
@@ -2,7 +2,9 @@ package game;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class containing all data of the player
@@ -11,8 +13,10 @@ import java.util.List;
  */
 public class GameData {
 	
-	// list of player with their score
+	// list of player with their score sorted by their ID (the same order as the server),
+	// playerMap is used to find the player by their ID, both is changed when synchronized playerList
 	private List<PlayerData> playerList;
+	private Map<Integer, PlayerData> playerMap = new HashMap<Integer, PlayerData>();
 	
 	// brush color selected by the player used to draw the image
 	private Color brushColor;
@@ -29,8 +33,9 @@ public class GameData {
 	// thickness of the brush used by this player
 	private int thickness = 1;
 	
-	// ArrayList of Integer to store image that will be shown in the canvas
-	private List<Integer> image = new ArrayList<Integer>();
+	// code of the image that will be shown in the canvas (see Canvas), the code is added
+	// when synchronized image, the canvas read it with StrokeBuffer.Reader without locking
+	private StrokeBuffer image = new StrokeBuffer();
 	
 	// playerColor is the color for the player card one the player list, to differentiate
 	// them from other player, so the player knew their name (especially if their name randomized)
@@ -47,52 +52,78 @@ public class GameData {
 	}
 	
 	/**
-	 * Add player to the player list at certain index
-	 * @param index : index of the player inside player list
+	 * Add player to the player list, the player with the same ID is replaced
+	 * @param id : ID of the player
 	 * @param playerName : name of the player
+	 * @return position of the player inside player list
 	 */
-	public void addPlayer(int index, String playerName)
+	public int addPlayer(int id, String playerName)
 	{
-		// synchronize player list to prevent race and destroy the index
+		// synchronize player list to prevent race and destroy the order
 		synchronized (this.playerList) 
 		{
-			// append until the size of player list is capable to insert the new player
-			while (this.playerList.size() <= index)
+			this.removePlayer(id, false);
+			
+			// the player is put before the first player with bigger ID
+			int position = 0;
+			while (position < this.playerList.size() && this.playerList.get(position).getId() < id)
 			{
-				this.playerList.add(null);
+				position++;
 			}
 			
-			// set the new player at index
-			this.playerList.set(index, new PlayerData(playerName));	
+			PlayerData player = new PlayerData(id, playerName);
+			this.playerList.add(position, player);
+			this.playerMap.put(id, player);
+			return position;
 		}
 	}
 	
 	/**
-	 * Remove player inside player list at index
-	 * @param index : index of player to be removed
+	 * Remove player with certain ID from player list
+	 * @param id : ID of player to be removed
+	 * @param shiftId : true if the ID is the index of the player (protocol version 1),
+	 * every player after the removed player get their ID - 1 like the server do
+	 * @return position of the removed player inside player list, -1 if there's no player with the ID
 	 */
-	public void removePlayer(int index)
+	public int removePlayer(int id, boolean shiftId)
 	{
-		// synchronize player list to prevent race and destroy the index
+		// synchronize player list to prevent race and destroy the order
 		synchronized (this.playerList) 
 		{
-			if (index < this.playerList.size())
+			PlayerData player = this.playerMap.remove(id);
+			if (player == null)
+			{
+				return -1;
+			}
+			int position = this.playerList.indexOf(player);
+			this.playerList.remove(position);
+			
+			if (shiftId)
 			{
-				this.playerList.remove(index);							
+				this.playerMap.clear();
+				for (PlayerData otherPlayer : this.playerList)
+				{
+					if (otherPlayer.getId() > id)
+					{
+						otherPlayer.setId(otherPlayer.getId() - 1);
+					}
+					this.playerMap.put(otherPlayer.getId(), otherPlayer);
+				}
 			}
+			return position;
 		}
 	}
 	
 	/**
-	 * Get player data from index
-	 * @param index : index of the player
-	 * @return data of the player at certain index
+	 * Get player data from ID
+	 * @param id : ID of the player
+	 * @return data of the player, null if there's no player with the ID
 	 */
-	public PlayerData getPlayerFromIndex(int index)
+	public PlayerData getPlayer(int id)
 	{
 		synchronized (this.playerList) 
 		{
-			return this.playerList.get(index);
+			return this.playerMap.get(id);
 		}
 	}
 	
@@ -142,7 +173,7 @@ public class GameData {
 	}
 	
 	/**
-	 * Add some code to the image ArrayList
+	 * Add some code to the image
 	 * @param data : array of integer, consisting code of the image
 	 */
 	public void addTexture(int data[])
@@ -157,32 +188,65 @@ public class GameData {
 				// because the player who is drawing is still drawing, no way the 
 				// color of this point of line changed from the last point, 
 				// so it just need to save the coordinate
-				image.add(data[4]);
-				image.add(data[5]);
+				image.add(data[4], data[5]);
 			}
 			else
 			{
 				// the player who is drawing start drawing, so it need to 
-				// save all code to image AraryList
-				for (int i : data) {
-					image.add(i);				
-				}
+				// save all code to image
+				image.add(data);
 				this.otherPlayerStillDrawing = true;
 			}			
 		}
 	}
 	
 	/**
-	 * Get image ArrayList
-	 * @return ArrayList of Integer representing the image
+	 * Start new line of the player who is drawing (compact stroke from protocol version 2),
+	 * the line before is ended if it's not yet ended
+	 * @param thickness : thickness of the line
+	 * @param red : red value of the color
+	 * @param green : green value of the color
+	 * @param blue : blue value of the color
+	 * @param x : x coordinate of the first point
+	 * @param y : y coordinate of the first point
+	 */
+	public void startStroke(int thickness, int red, int green, int blue, int x, int y)
+	{
+		synchronized (this.image) 
+		{
+			this.stopDrawing();
+			this.addTexture(new int[] {thickness, red, green, blue, x, y});
+		}
+	}
+	
+	/**
+	 * Add next point to the line of the player who is drawing (compact stroke from
+	 * protocol version 2), ignored if the line is already ended
+	 * @param x : x coordinate
+	 * @param y : y coordinate
+	 */
+	public void addStrokePoint(int x, int y)
+	{
+		synchronized (this.image) 
+		{
+			if (this.otherPlayerStillDrawing)
+			{
+				this.image.add(x, y);
+			}
+		}
+	}
+	
+	/**
+	 * Get the code of the image
+	 * @return buffer of the code representing the image
 	 */
-	public List<Integer> getImage()
+	public StrokeBuffer getImage()
 	{
 		return this.image;
 	}
 	
 	/**
-	 * Inserting -1 code to image ArrayList when the player who draw the image stop drawing
+	 * Inserting -1 code to image when the player who draw the image stop drawing
 	 */
 	public void stopDrawing()
 	{
@@ -218,15 +282,30 @@ public class GameData {
 	}
 	
 	/**
-	 * Add score to player with certain index inside player list
-	 * @param index : index of the player
+	 * Add score to player with certain ID
+	 * @param id : ID of the player
 	 * @param score : additional score for the player
 	 */
-	public void addPlayerScore(int index, int score)
+	public void addPlayerScore(int id, int score)
+	{
+		PlayerData player = this.getPlayer(id);
+		if (player != null)
+		{
+			player.addScore(score);
+		}
+	}
+	
+	/**
+	 * Set round trip time of player with certain ID
+	 * @param id : ID of the player
+	 * @param latency : round trip time of the player (in milliseconds)
+	 */
+	public void setPlayerLatency(int id, int latency)
 	{
-		if (index < this.playerList.size())
+		PlayerData player = this.getPlayer(id);
+		if (player != null)
 		{
-			this.playerList.get(index).addScore(score);
+			player.setLatency(latency);
 		}
 	}
 	
@@ -239,6 +318,7 @@ public class GameData {
 		synchronized (this.playerList) 
 		{
 			this.playerList.clear();
+			this.playerMap.clear();
 		}
 		this.brushColor = Color.BLACK;
 		this.stillDrawing = false;
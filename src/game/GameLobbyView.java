@@ -10,17 +10,23 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.Socket;
+import java.util.zip.DeflaterOutputStream;
 
 import javax.swing.JColorChooser;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import Utility.ClientConnection;
+import Utility.InflatingInputStream;
+import Utility.UtilityProtocol;
 import Utility.UtilityRandomName;
 
 /**
@@ -36,12 +42,57 @@ public class GameLobbyView extends JPanel implements ResetableView {
 	// name of the player
 	private String playerName;
 	
-	// connection to the server
-	private Socket socket;
+	// join code of the room inside the server, empty for the default room,
+	// sent before the name (just for protocol version 2)
+	private String roomCode = "";
+	
+	// connection to the server (socket or loopback if this player created the lobby)
+	private ClientConnection connection;
 	private DataInputStream in;
 	private DataOutputStream out;
 	private Thread inputStreamThread = null; // thread for handling input
 	
+	// instruction to the server is assembled inside frameBuffer and then sent as one frame
+	// by endFrame, frameOut must always used when synchronized out
+	private ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream();
+	private DataOutputStream frameOut = new DataOutputStream(frameBuffer);
+	
+	// protocol version used with the server (see UtilityProtocol), the client ask for
+	// version 2 when connecting, server answer it before sending other instruction
+	// or the server doesn't support it if test byte come first,
+	// name of the player is sent after the version is known
+	private volatile int protocolVersion = UtilityProtocol.VERSION_1;
+	private volatile boolean protocolVersionKnown = false;
+	private boolean joined = false;
+	
+	// the client ask the server to compress the connection (protocol version 2 only) if it's
+	// enabled by system property skribbl.client.compression=true, compressedOut is
+	// the compressed stream of the connection if the server agree (null if not)
+	public static final String PROPERTY_COMPRESSION = "skribbl.client.compression";
+	private static final boolean compressionEnabled = Boolean.getBoolean(PROPERTY_COMPRESSION);
+	private DeflaterOutputStream compressedOut = null;
+	
+	// stroke sent by this player in protocol version 2, the point is sent as difference
+	// from the last point and the style is sent just once at the start of the stroke
+	private boolean strokeStarted = false;
+	private int strokeLastX = 0;
+	private int strokeLastY = 0;
+	
+	// stroke record not yet sent in protocol version 2, every drag of the mouse is saved here
+	// and sent together as one STROKE instruction after the flush interval or when there's
+	// enough point, strokeBatchOut must always used when synchronized out
+	public static final String PROPERTY_STROKE_FLUSH_INTERVAL = "skribbl.client.strokeFlushInterval";
+	private static final int STROKE_FLUSH_INTERVAL = Integer.getInteger(PROPERTY_STROKE_FLUSH_INTERVAL, 17);
+	private static final int STROKE_BATCH_LIMIT = 64;
+	private ByteArrayOutputStream strokeBatchBuffer = new ByteArrayOutputStream();
+	private DataOutputStream strokeBatchOut = new DataOutputStream(strokeBatchBuffer);
+	private int strokeBatchPoints = 0;
+	private Timer strokeFlushTimer;
+	
+	// difference between the server clock and this client clock, used for
+	// the count down of the turn (protocol version 2)
+	private ServerClock serverClock = new ServerClock();
+	
 	// Data for the game
 	private GameData gameData = new GameData();
 	
@@ -51,11 +102,12 @@ public class GameLobbyView extends JPanel implements ResetableView {
 	// game view (view when player is playing the game, consisting the canvas)
 	private GameView gameView;
 	
-	// currentView used to saved which JPanel that shown as the view
-	private JPanel currentView;
+	// the thread reading from the server change GameData and tell the pump what is changed,
+	// the pump show the change on the view on the Event Dispatcher Thread once per frame
+	private ViewUpdatePump viewUpdatePump;
 	
 	// saved when last time the player is drawing, interval for input of the position of
-	// the player mouse cursor location
+	// the player mouse cursor location (protocol version 1, version 2 use the stroke batch)
 	private long mouseLastInput = System.currentTimeMillis();
 	
 	// listener for the condition of the player like 
@@ -77,7 +129,8 @@ public class GameLobbyView extends JPanel implements ResetableView {
 				{
 					try
 					{
-						out.writeByte(4);						
+						frameOut.writeByte(4);
+						endFrame();
 					}
 					catch (IOException ex)
 					{
@@ -99,9 +152,9 @@ public class GameLobbyView extends JPanel implements ResetableView {
 							// send the code == 3 to indicate there's chat input
 							// from client for the server
 							// then the length of the chat, then the chat itself
-							out.writeByte(3);
-							out.writeInt(chat.length());
-							out.writeChars(chat);
+							frameOut.writeByte(3);
+							UtilityProtocol.writeString(frameOut, chat, protocolVersion);
+							endFrame();
 						} 
 						catch (IOException e1) 
 						{
@@ -138,9 +191,9 @@ public class GameLobbyView extends JPanel implements ResetableView {
 							// then the length of the chat, then the chat itself
 							// algorithm almost same with the one inside lobby view
 							// but the code is 12 to differentiate the source of the chat
-							out.writeByte(12);
-							out.writeInt(chat.length());
-							out.writeChars(chat);
+							frameOut.writeByte(12);
+							UtilityProtocol.writeString(frameOut, chat, protocolVersion);
+							endFrame();
 						} 
 						catch (IOException e1) 
 						{
@@ -196,7 +249,7 @@ public class GameLobbyView extends JPanel implements ResetableView {
 					try 
 					{
 						 // send stop drawing signal to server
-						out.writeByte(11);
+						sendStopDrawing();
 					} 
 					catch (IOException e1) 
 					{
@@ -227,7 +280,7 @@ public class GameLobbyView extends JPanel implements ResetableView {
 				{
 					try 
 					{
-						out.writeByte(11);
+						sendStopDrawing();
 					} 
 					catch (IOException e1) 
 					{
@@ -263,7 +316,29 @@ public class GameLobbyView extends JPanel implements ResetableView {
 			// must use mouseDragged, if mouse move when still pressed
 			// this one is the one called, not the mouseMoved
 
-			if (System.currentTimeMillis() - mouseLastInput >= 17)
+			if (protocolVersion == UtilityProtocol.VERSION_2)
+			{
+				// every point is saved to the batch, the batch is sent by the timer
+				// so there's no need to skip point like in protocol version 1
+				synchronized (gameData) 
+				{
+					if (gameData.isStillDrawing())
+					{
+						synchronized (out) 
+						{
+							try 
+							{
+								addStrokePoint(e.getX(), e.getY());
+							} 
+							catch (IOException e1) 
+							{
+								e1.printStackTrace();
+							}
+						}
+					}
+				}
+			}
+			else if (System.currentTimeMillis() - mouseLastInput >= 17)
 			{
 				// if condition is to give interval 
 				// 17 from 1000 / 60  (60 frame rate per second)
@@ -273,23 +348,27 @@ public class GameLobbyView extends JPanel implements ResetableView {
 					{
 						// send the data if the player is drawing, so this will not
 						// send image data if player mouse is just moving inside the canvas
-						try 
+						synchronized (out) 
 						{
-							// send code 10 to tell the server there's image data coming
-							// sent thickness, then red color value, then green color value,
-							// then blue color value, then coordinate x and coordinate y 
-							// of the mouse
-							out.writeByte(10);
-							out.writeInt(gameData.getThickness());
-							out.writeInt(gameData.getBrushColor().getRed());
-							out.writeInt(gameData.getBrushColor().getGreen());
-							out.writeInt(gameData.getBrushColor().getBlue());
-							out.writeInt(e.getX());
-							out.writeInt(e.getY());
-						} 
-						catch (IOException e1) 
-						{
-							e1.printStackTrace();
+							try 
+							{
+								// send code 10 to tell the server there's image data coming
+								// sent thickness, then red color value, then green color value,
+								// then blue color value, then coordinate x and coordinate y 
+								// of the mouse
+								frameOut.writeByte(10);
+								frameOut.writeInt(gameData.getThickness());
+								frameOut.writeInt(gameData.getBrushColor().getRed());
+								frameOut.writeInt(gameData.getBrushColor().getGreen());
+								frameOut.writeInt(gameData.getBrushColor().getBlue());
+								frameOut.writeInt(e.getX());
+								frameOut.writeInt(e.getY());
+								endFrame();
+							} 
+							catch (IOException e1) 
+							{
+								e1.printStackTrace();
+							}
 						}
 						
 					}
@@ -325,24 +404,55 @@ public class GameLobbyView extends JPanel implements ResetableView {
 		
 		this.lobbyView.setBounds(0, 0, 1280, 720);
 		
+		this.viewUpdatePump = new ViewUpdatePump(this, this.lobbyView, this.gameView, this.gameData);
+		
 		// reset the view
 		this.lobbyView.reset();
 		this.setPanel(this.lobbyView);
 		
+		// timer to send the stroke batch, started when the first record is put to the batch
+		this.strokeFlushTimer = new Timer(STROKE_FLUSH_INTERVAL, e -> {
+			synchronized (this.out) 
+			{
+				try 
+				{
+					this.flushStroke();
+				} 
+				catch (IOException e1) 
+				{
+					
+				}
+			}
+		});
+		this.strokeFlushTimer.setRepeats(false);
+		
 		// create input thread
 		this.inputStreamThread = new Thread(inputStreamRunnable);
 		this.inputStreamThread.start();
 	}
 	
 	/**
-	 * Connect the program to the server
-	 * @param socket : socket connection
+	 * Connect the program to the default room of the server
+	 * @param connection : connection to the server
 	 * @param playerName : name of player (random if doesn't have name)
 	 * @throws IOException if failed to connect to server
 	 */
-	public void connectToLobby(Socket socket, String playerName) throws IOException
+	public void connectToLobby(ClientConnection connection, String playerName) throws IOException
 	{
-		this.socket = socket;
+		this.connectToLobby(connection, playerName, "");
+	}
+	
+	/**
+	 * Connect the program to the room of the server
+	 * @param connection : connection to the server
+	 * @param playerName : name of player (random if doesn't have name)
+	 * @param roomCode : join code of the room, empty for the default room
+	 * @throws IOException if failed to connect to server
+	 */
+	public void connectToLobby(ClientConnection connection, String playerName, String roomCode) throws IOException
+	{
+		this.connection = connection;
+		this.roomCode = roomCode.trim();
 		
 		if (playerName.length() > 0)
 		{
@@ -353,10 +463,25 @@ public class GameLobbyView extends JPanel implements ResetableView {
 			// random player name if player doesn't write their name
 			this.playerName = UtilityRandomName.getRandomName();
 		}
+		this.viewUpdatePump.setPlayerName(this.playerName);
 		
-		// create the data stream
-		this.in = new DataInputStream(this.socket.getInputStream());
-		this.out = new DataOutputStream(this.socket.getOutputStream());
+		// create the data stream, blocking read will throw exception if there's
+		// no data from server for 10 seconds
+		this.connection.setReadTimeout(10000);
+		this.in = new DataInputStream(this.connection.getInputStream());
+		this.out = new DataOutputStream(this.connection.getOutputStream());
+		
+		// ask the server to use protocol version 2 (with compression), this must be the first byte
+		this.protocolVersion = UtilityProtocol.VERSION_1;
+		this.protocolVersionKnown = false;
+		this.compressedOut = null;
+		this.joined = false;
+		this.strokeStarted = false;
+		this.strokeBatchBuffer.reset();
+		this.strokeBatchPoints = 0;
+		this.frameBuffer.reset();
+		this.serverClock.reset();
+		this.out.writeByte(compressionEnabled ? UtilityProtocol.HELLO_V2_DEFLATE : UtilityProtocol.HELLO_V2);
 		
 		// continue the thread
 		this.inputStreamRunnable.setMustRun(true);
@@ -380,6 +505,36 @@ public class GameLobbyView extends JPanel implements ResetableView {
 		// used to pause the thread
 		boolean mustRun = false;
 		
+		// stream of the instruction currently read, the input stream itself for
+		// protocol version 1 or the data of the instruction for protocol version 2
+		DataInputStream source;
+		
+		// last point of the stroke received from server, the point inside
+		// stroke record is difference from this point
+		int strokeLastPoint[] = {0, 0};
+		
+		// put the stroke record received from server to the image
+		UtilityProtocol.StrokeHandler strokeHandler = new UtilityProtocol.StrokeHandler() {
+			
+			@Override
+			public void strokeStart(int thickness, int red, int green, int blue, int x, int y) 
+			{
+				gameData.startStroke(thickness, red, green, blue, x, y);
+			}
+			
+			@Override
+			public void strokePoint(int x, int y) 
+			{
+				gameData.addStrokePoint(x, y);
+			}
+			
+			@Override
+			public void strokeEnd() 
+			{
+				gameData.stopDrawing();
+			}
+		};
+		
 		@Override
 		public void run() {
 			
@@ -398,16 +553,57 @@ public class GameLobbyView extends JPanel implements ResetableView {
 						while(true)
 						{
 							// waiting for byte code
+							source = in;
 							waitInput(1);
 							
 							code = in.readByte();
 							
+							if (protocolVersion == UtilityProtocol.VERSION_2)
+							{
+								// protocol version 2, the whole instruction is read at once
+								source = readFrame();
+							}
+							
 							if (code == 0)
 							{
+								if (!protocolVersionKnown)
+								{
+									// test byte come before the answer of the protocol version,
+									// the server only support version 1
+									protocolVersionKnown = true;
+									sendPlayerName();
+								}
+								else if (protocolVersion == UtilityProtocol.VERSION_2 && source.available() >= 8)
+								{
+									// the test byte contain the server time and its sequence number,
+									// both is sent back so the server could count the round trip time
+									long serverTime = source.readLong();
+									serverClock.addSample(serverTime);
+									int sequence = source.available() > 0 ? UtilityProtocol.readVarInt(source) : -1;
+									respondPing(serverTime, sequence);
+									continue;
+								}
+								
 								// send back the byte to server
 								respondTestByte();
 								continue;
 							}
+							else if ((code == UtilityProtocol.HELLO_V2 || code == UtilityProtocol.HELLO_V2_DEFLATE) && !protocolVersionKnown)
+							{
+								// server accept protocol version 2, all instruction after this is version 2
+								if (code == UtilityProtocol.HELLO_V2_DEFLATE)
+								{
+									// and compressed, every byte after this (both side) is compressed
+									in = new DataInputStream(new InflatingInputStream(in, null));
+									synchronized (out) 
+									{
+										compressedOut = new DeflaterOutputStream(connection.getOutputStream(), true);
+									}
+								}
+								protocolVersion = UtilityProtocol.VERSION_2;
+								protocolVersionKnown = true;
+								sendPlayerName();
+							}
 							else if (code == -1)
 							{
 								// receive permission from server to join the server,
@@ -415,21 +611,24 @@ public class GameLobbyView extends JPanel implements ResetableView {
 								lobbyListener.propertyChange(
 										new PropertyChangeEvent(this, "JoinServer", false, true)
 										);
-								synchronized (out) 
-								{
-									// send data of the player to the server
-									out.writeByte(1);
-									out.writeInt(playerName.length());
-									out.writeChars(playerName);
-								}
+								
+								// send data of the player to the server (after the protocol version is known)
+								joined = true;
+								sendPlayerName();
 							}
 							else if (code == -2)
 							{
 								// receive denied instruction, the player can't join the server
-								socket.close();
+								// or the room (the room is sent after -1)
+								connection.close();
 								in.close();
 								out.flush();
 								out.close();
+								if (joined)
+								{
+									// already in the lobby view, going back to the main menu
+									lobbyListener.propertyChange(new PropertyChangeEvent(this, "Disconnected", false, true));
+								}
 								break;
 							}
 							else if (code == 1)
@@ -438,175 +637,123 @@ public class GameLobbyView extends JPanel implements ResetableView {
 								// some player join the server or getting information of
 								// all player after joining the lobby
 								
-								// algorithm is first read integer index of the player,
-								// then integer length of the name of the player,
-								// then the string name of the player
-								StringBuffer playerNameStringBuffer = new StringBuffer();
-								
+								// algorithm is first read integer ID of the player (index
+								// if protocol version 1), then integer length of the name
+								// of the player, then the string name of the player
 								waitInput(4);
-								int index = in.readInt();
-								waitInput(4);
-								int stringLength = in.readInt();
-								
-								for (int i = 0; i < stringLength; i++)
-								{
-									waitInput(2);
-									playerNameStringBuffer.append(in.readChar());
-								}
+								int playerId = source.readInt();
+								String playerName = readString();
 								
-								String playerName = playerNameStringBuffer.toString();
-								
-								// add the player to gameData and to lobby view
+								// add the player to gameData, the player list is shown by the pump
 								synchronized (gameData) 
 								{
-									gameData.addPlayer(index, playerName);
+									gameData.removePlayer(playerId, false);
+									gameData.addPlayer(playerId, playerName);
 								}
-								synchronized (lobbyView) 
-								{
-									if (playerName.compareTo(GameLobbyView.this.playerName) == 0)
-									{
-										lobbyView.addPlayer(index, playerName, true);										
-									}
-									else
-									{
-										lobbyView.addPlayer(index, playerName, false);
-									}
-								}
-								GameLobbyView.this.repaint();
+								viewUpdatePump.playersChanged();
 							}
 							else if (code == 2)
 							{
 								// someone disconnected from the server,
 								// must removed them from the list of player
 								
-								// read index of the player who disconnected from server
+								// read ID of the player who disconnected from server, the index
+								// of the player after them is shifted if protocol version 1
 								waitInput(4);
-								int index = in.readInt();
+								int playerId = source.readInt();
 								
 								// remove the player from the player list
+								int position;
 								synchronized (gameData) 
 								{
-									gameData.removePlayer(index);
+									position = gameData.removePlayer(playerId, protocolVersion == UtilityProtocol.VERSION_1);
 								}
-								if (currentView == lobbyView)
+								if (position >= 0)
 								{
-									synchronized (lobbyView)
-									{
-										lobbyView.removePlayer(index);
-									}									
-								}
-								else if (currentView == gameView)
-								{
-									synchronized (gameView) 
-									{
-										gameView.removePlayer(index);
-									}									
+									viewUpdatePump.playersChanged();
 								}
 							}
 							else if (code == 3)
 							{
 								// getting chat from player in lobby view
 								
-								// get player index who write the chat
+								// get player ID who write the chat
 								waitInput(4);
-								int playerIndex = in.readInt();
-								
-								// get length of chat
-								waitInput(4);
-								int chatLength = in.readInt();
-								
-								StringBuffer chatStringBuffer = new StringBuffer();
+								int playerId = source.readInt();
 								
 								// read the whole chat
-								for (int i = 0; i < chatLength; i++)
-								{
-									waitInput(2);
-									chatStringBuffer.append(in.readChar());
-								}
+								String chat = readString();
 								
-								// add the chat to the current view
-								if (currentView == lobbyView)
-								{
-									lobbyView.addChat(
-											gameData.getPlayerFromIndex(playerIndex).getName(),
-											chatStringBuffer.toString()
-									);
-								}
-								else if (currentView == gameView)
+								// add the chat to the current view, the chat of unknown player is not shown
+								PlayerData player = gameData.getPlayer(playerId);
+								if (player != null)
 								{
-									gameView.addChat(
-											gameData.getPlayerFromIndex(playerIndex).getName(),
-											chatStringBuffer.toString(), false
-									);
+									viewUpdatePump.addChat(new ChatMessage(player.getName(), chat));
 								}
-								
+
 							}
 							else if (code == 4)
 							{
 								// receive start instruction, going to the game view
 								// and the game will be started
-								synchronized (gameView) 
-								{
-									gameView.reset();
-									synchronized (gameData.getPlayerList()) {
-										gameView.addPlayer(gameData.getPlayerList(), playerName);									
-									}
-									setPanel(gameView);
-									gameView.repaint();
-									repaint();									
-								}
+								viewUpdatePump.showGameView();
 							}
 							else if (code == 5)
 							{
 								// receive the object name (or nouns) from the server
 								// to be shown on top of the game view
 								
-								// read the length of the word then read the whole string
-								// then showed it inside game view
-								waitInput(4);
-								
-								int wordLength = in.readInt();
+								// read the whole string then showed it inside game view
+								String word = readString();
 								
-								StringBuffer wordStringBuffer = new StringBuffer();
-								for (int i = 0; i < wordLength; i++)
-								{
-									waitInput(2);
-									wordStringBuffer.append(in.readChar());
-								}
-								
-								synchronized (gameView) 
-								{
-									gameView.setWord(wordStringBuffer.toString());
-								}
+								viewUpdatePump.setWord(word);
 							}
 							else if (code == 6)
 							{
 								// received game turn time remaining from the server (in seconds)
 								// then showed it inside game view
 								waitInput(4);
-								int time = in.readInt();
+								int time = source.readInt();
 								
-								synchronized (gameView) {
-									gameView.setTime(time);
+								viewUpdatePump.setTime(time);
+							}
+							else if (code == UtilityProtocol.TURN_DEADLINE)
+							{
+								// received the end of the turn (protocol version 2), the
+								// remaining time is counted by the game view itself
+								long deadline = source.readLong();
+								int duration = source.readInt();
+								viewUpdatePump.startCountdown(serverClock.toLocalTime(deadline), duration);
+							}
+							else if (code == UtilityProtocol.PLAYER_LATENCY)
+							{
+								// received the round trip time of the player (protocol version 2),
+								// showed on the player list of the game view
+								int count = UtilityProtocol.readVarInt(source);
+								synchronized (gameData) 
+								{
+									for (int i = 0; i < count; i++)
+									{
+										int playerId = UtilityProtocol.readVarInt(source);
+										gameData.setPlayerLatency(playerId, UtilityProtocol.readVarInt(source));
+									}
 								}
+								viewUpdatePump.playersChanged();
 							}
 							else if (code == 7)
 							{
 								// received instruction to give additional score to certain player
-								// first read the index of the player then the additional score
+								// first read the ID of the player then the additional score
 								// the update the score on the player list
 								waitInput(8);
-								int playerIndex = in.readInt();
-								int additionalScore = in.readInt();
+								int playerId = source.readInt();
+								int additionalScore = source.readInt();
 								
 								synchronized (gameData) 
 								{
-									gameData.addPlayerScore(playerIndex, additionalScore);
-									synchronized (gameView) 
-									{
-										gameView.updatePlayer(gameData.getPlayerList());
-									}
+									gameData.addPlayerScore(playerId, additionalScore);
 								}
+								viewUpdatePump.playersChanged();
 							}
 							else if (code == 8)
 							{
@@ -618,16 +765,21 @@ public class GameLobbyView extends JPanel implements ResetableView {
 									gameData.resetPlayerCondition();
 									gameData.setStillDrawing(false);
 								}
+								viewUpdatePump.clearCanvas();
 							}
 							else if (code == 9)
 							{
 								// someone start drawing, going to change the name of the player
-								// who is drawing by getting their index from server
+								// who is drawing by getting their ID from server
 								waitInput(4);
-								int playerTurn = in.readInt();
+								int playerTurn = source.readInt();
 								synchronized (gameData) 
 								{
-									gameView.setPlayerTurn(gameData.getPlayerFromIndex(playerTurn).getName());
+									PlayerData player = gameData.getPlayer(playerTurn);
+									if (player != null)
+									{
+										viewUpdatePump.setPlayerTurn(player.getName());
+									}
 								}
 							}
 							else if (code == 10)
@@ -637,14 +789,11 @@ public class GameLobbyView extends JPanel implements ResetableView {
 								// there's six integer sent from server
 								// thickness, color red value, color green value, color blue value, x coordinate, y coordinate
 								waitInput(24);
-								int data[] = {in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+								int data[] = {source.readInt(), source.readInt(), source.readInt(), source.readInt(), source.readInt(), source.readInt()};
 							
 								// update the new image and show it on the canvas
 								gameData.addTexture(data);
-								synchronized (gameView) 
-								{
-									gameView.repaint();
-								}
+								gameView.repaintCanvas();
 							}
 							else if (code == 11)
 							{
@@ -652,24 +801,19 @@ public class GameLobbyView extends JPanel implements ResetableView {
 								// stop drawing the line (release left mouse)
 								gameData.stopDrawing();
 							}
+							else if (code == UtilityProtocol.STROKE)
+							{
+								// receive stroke records (protocol version 2), could be start of the line,
+								// the next points of the line, or end of the line
+								UtilityProtocol.readStroke(source, strokeLastPoint, strokeHandler);
+								gameView.repaintCanvas();
+							}
 							else if (code == 12)
 							{
 								// reading broadcast from the server, the broadcast from server will be
 								// shown fully without any edit
-								// first read the length of the broadcast, then read the whole broadcast,
-								// and then show it inside game view chat list
-								waitInput(4);
-								int stringLength = in.readInt();
-								
-								StringBuffer broadcastStringBuffer = new StringBuffer();
-								
-								for (int i = 0; i < stringLength; i++)
-								{
-									waitInput(2);
-									broadcastStringBuffer.append(in.readChar());
-								}
-								
-								gameView.addChat(null, broadcastStringBuffer.toString(), true);
+								// read the whole broadcast and then show it inside game view chat list
+								viewUpdatePump.addChat(new ChatMessage(readString()));
 							}
 							else if (code == 13)
 							{
@@ -738,17 +882,100 @@ public class GameLobbyView extends JPanel implements ResetableView {
 		}
 		
 		/**
-		 * Respond to test byte send by server by sending the test byte back to server
+		 * Respond to test byte send by server by sending the test byte back to server,
+		 * always sent because the server match every echo with its test byte (round trip time)
 		 * @throws IOException if can't send test byte to server
 		 */
 		private void respondTestByte() throws IOException
 		{
 			synchronized (out) 
 			{
-				out.writeByte(0);
+				frameOut.writeByte(0);
+				endFrame();
+			}
+		}
+		
+		/**
+		 * Respond to test byte of protocol version 2 by sending back its time and
+		 * sequence number, always sent because the server use it for the round trip time
+		 * @param serverTime : time inside the test byte
+		 * @param sequence : sequence number inside the test byte, -1 if there's none
+		 * @throws IOException if can't send test byte to server
+		 */
+		private void respondPing(long serverTime, int sequence) throws IOException
+		{
+			synchronized (out) 
+			{
+				frameOut.writeByte(0);
+				if (sequence >= 0)
+				{
+					frameOut.writeLong(serverTime);
+					UtilityProtocol.writeVarInt(frameOut, sequence);
+				}
+				endFrame();
 			}
 		}
 		
+		/**
+		 * Send name of the player to the server after the player joined and the
+		 * protocol version is known, the join code of the room is sent before it
+		 * @throws IOException if can't send the name to server
+		 */
+		private void sendPlayerName() throws IOException
+		{
+			if (joined && protocolVersionKnown)
+			{
+				synchronized (out) 
+				{
+					if (protocolVersion == UtilityProtocol.VERSION_2 && roomCode.length() > 0)
+					{
+						// server with version 1 doesn't have room, the player join its only lobby
+						frameOut.writeByte(UtilityProtocol.JOIN_ROOM);
+						UtilityProtocol.writeString(frameOut, roomCode, protocolVersion);
+						endFrame();
+					}
+					frameOut.writeByte(1);
+					UtilityProtocol.writeString(frameOut, playerName, protocolVersion);
+					endFrame();
+				}
+			}
+		}
+		
+		/**
+		 * Read the data of one instruction of protocol version 2 at once,
+		 * varint length of the data followed by the data
+		 * @return stream containing the data
+		 * @throws IOException if input stream is closed or the length is not valid
+		 */
+		private DataInputStream readFrame() throws IOException
+		{
+			int length = UtilityProtocol.readVarInt(in);
+			if (length < 0 || length > UtilityProtocol.MAXIMUM_FRAME_LENGTH)
+			{
+				throw new IOException("Instruction too long");
+			}
+			byte data[] = new byte[length];
+			in.readFully(data);
+			lastInput = System.currentTimeMillis();
+			return new DataInputStream(new ByteArrayInputStream(data));
+		}
+		
+		/**
+		 * Read string from the instruction with the format of the protocol version
+		 * @return the string
+		 * @throws IOException if input stream is closed
+		 * @throws InterruptedException if thread is interrupted
+		 */
+		private String readString() throws IOException, InterruptedException
+		{
+			if (protocolVersion == UtilityProtocol.VERSION_1)
+			{
+				// wait for the length, the chars is read by blocking read
+				waitInput(4);
+			}
+			return UtilityProtocol.readString(source, protocolVersion);
+		}
+		
 		/**
 		 * Method to wait for certain amount of byte exist in input stream to prevent
 		 * EOFException when reading input stream
@@ -758,7 +985,7 @@ public class GameLobbyView extends JPanel implements ResetableView {
 		 */
 		public void waitInput(int n) throws IOException, InterruptedException
 		{
-			while(in.available() < n)
+			while(source.available() < n)
 			{
 				if (System.currentTimeMillis() - lastInput >= 10000)
 				{
@@ -766,7 +993,15 @@ public class GameLobbyView extends JPanel implements ResetableView {
 					// to disconnect the player
 					throw new IOException();
 				}
-				Thread.sleep(10);
+				if (source == in)
+				{
+					// the loopback connection wake up as soon as the frame is sent
+					connection.awaitInput(10);
+				}
+				else
+				{
+					Thread.sleep(10);
+				}
 			}
 			lastInput = System.currentTimeMillis();
 		}
@@ -775,13 +1010,10 @@ public class GameLobbyView extends JPanel implements ResetableView {
 	@Override
 	public void reset() {
 		
-		// clear view and data, change view to lobby view
-		
-		this.lobbyView.reset();
-		this.setPanel(this.lobbyView);
-		this.gameView.reset();
+		// clear data, then the view is cleared and changed to lobby view by the pump
 		
 		this.gameData.reset();
+		this.viewUpdatePump.reset();
 	}
 	
 	/**
@@ -793,7 +1025,128 @@ public class GameLobbyView extends JPanel implements ResetableView {
 		// remove current panel and change to the new one
 		this.removeAll();
 		this.add(panel);
-		this.currentView = panel;
+	}
+	
+	/**
+	 * Send stop drawing to the server, as the end of the stroke if the player sent stroke
+	 * in protocol version 2 or code 11, must be called when synchronized out
+	 * @throws IOException if can't send the instruction to the server
+	 */
+	private void sendStopDrawing() throws IOException
+	{
+		if (this.strokeStarted)
+		{
+			// the end is sent together with the point still inside the batch
+			UtilityProtocol.writeStrokeEnd(this.strokeBatchOut);
+			this.strokeStarted = false;
+			this.flushStroke();
+		}
+		else
+		{
+			this.frameOut.writeByte(11);
+			this.endFrame();
+		}
+	}
+	
+	/**
+	 * Put the point of the mouse to the stroke batch (protocol version 2), the style is
+	 * put only at the start of the stroke and the next point is difference from the last point,
+	 * must be called when synchronized out
+	 * @param x : x coordinate of the mouse
+	 * @param y : y coordinate of the mouse
+	 * @throws IOException if can't send the batch to the server
+	 */
+	private void addStrokePoint(int x, int y) throws IOException
+	{
+		if (this.strokeStarted)
+		{
+			if (x == this.strokeLastX && y == this.strokeLastY)
+			{
+				// the same point doesn't change the line
+				return;
+			}
+			UtilityProtocol.writeStrokePoint(this.strokeBatchOut, x - this.strokeLastX, y - this.strokeLastY);
+		}
+		else
+		{
+			UtilityProtocol.writeStrokeStart(
+					this.strokeBatchOut, this.gameData.getThickness(), this.gameData.getBrushColor().getRed(),
+					this.gameData.getBrushColor().getGreen(), this.gameData.getBrushColor().getBlue(), x, y
+			);
+			this.strokeStarted = true;
+		}
+		this.strokeLastX = x;
+		this.strokeLastY = y;
+		this.strokeBatchPoints += 1;
+		
+		if (this.strokeBatchPoints >= STROKE_BATCH_LIMIT)
+		{
+			this.flushStroke();
+		}
+		else if (this.strokeBatchPoints == 1)
+		{
+			// first point of the batch, the batch will be sent after the flush interval
+			this.strokeFlushTimer.restart();
+		}
+	}
+	
+	/**
+	 * Send all stroke record inside the batch as one STROKE instruction,
+	 * must be called when synchronized out
+	 * @throws IOException if can't send the batch to the server
+	 */
+	private void flushStroke() throws IOException
+	{
+		this.strokeFlushTimer.stop();
+		if (this.strokeBatchBuffer.size() == 0)
+		{
+			return;
+		}
+		
+		try
+		{
+			this.frameOut.writeByte(UtilityProtocol.STROKE);
+			this.strokeBatchBuffer.writeTo(this.frameOut);
+			this.endFrame();
+		}
+		finally
+		{
+			this.strokeBatchBuffer.reset();
+			this.strokeBatchPoints = 0;
+		}
+	}
+	
+	/**
+	 * Send the instruction assembled inside frameBuffer to the server as one frame,
+	 * must be called when still synchronized out, instruction before the protocol version
+	 * is known is not sent because the server could read it with the wrong version
+	 * @throws IOException if can't send the instruction to the server
+	 */
+	private void endFrame() throws IOException
+	{
+		try
+		{
+			if (this.protocolVersionKnown)
+			{
+				byte frame[] = UtilityProtocol.toFrame(
+						this.frameBuffer.toByteArray(), this.frameBuffer.size(), this.protocolVersion
+				);
+				if (this.compressedOut != null)
+				{
+					// flush end the compressed data so the server could read it now
+					this.compressedOut.write(frame);
+					this.compressedOut.flush();
+				}
+				else
+				{
+					this.out.write(frame);
+				}
+			}
+		}
+		finally
+		{
+			this.frameBuffer.reset();
+		}
 	}
 	
 	/**
@@ -808,7 +1161,8 @@ public class GameLobbyView extends JPanel implements ResetableView {
 			
 			synchronized (this.out) 
 			{
-				this.out.writeByte(2);
+				this.frameOut.writeByte(2);
+				this.endFrame();
 			}
 			this.in.close();
 			this.out.flush();
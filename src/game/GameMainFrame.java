@@ -10,7 +10,11 @@ import java.net.Socket;
 
 import javax.swing.JFrame;
 
-import server.ServerGameRunnable;
+import Utility.ClientConnection;
+import Utility.SocketClientConnection;
+import server.GameEngine;
+import server.LoopbackTransport;
+import server.TcpTransport;
 
 /**
  * Main frame containing all UI
@@ -22,14 +26,15 @@ public class GameMainFrame extends JFrame {
 	// generated serial code (random)
 	private static final long serialVersionUID = -4901296736593655071L;
 	
-	// thread for server if this player is the one who make the lobby
-	private Thread serverThread = null;
-	
 	// tell if the player is the one who make the lobby
 	private boolean createdLobby = false;
 	
-	// runnable for serverThread
-	private ServerGameRunnable serverRunnable;
+	// server if this player is the one who make the lobby, other player connect
+	// to it from the network and this player connect to it without the network (loopback)
+	// unless it's disabled by system property skribbl.client.loopback=false
+	public static final String PROPERTY_LOOPBACK = "skribbl.client.loopback";
+	private static final boolean loopbackEnabled = Boolean.parseBoolean(System.getProperty(PROPERTY_LOOPBACK, "true"));
+	private GameEngine serverEngine;
 	
 	// listener for all button inside MainMenuView and back button inside LobbyView
 	private ActionListener mainMenuButtonStartListener = new ActionListener() {
@@ -46,9 +51,10 @@ public class GameMainFrame extends JFrame {
 					// get input data from all text field in MainMenuView
 					String data[] = mainMenuView.getAllData();
 					
-					// build the connection
+					// build the connection, the room code tell which room inside the server
+					// will be joined (empty for the default room)
 					Socket socket = new Socket(data[1], Integer.parseInt(data[2]));
-					gameLobbyView.connectToLobby(socket, data[0]);
+					gameLobbyView.connectToLobby(new SocketClientConnection(socket), data[0], data[3]);
 
 					GameMainFrame.this.createdLobby = false;
 				}
@@ -60,14 +66,35 @@ public class GameMainFrame extends JFrame {
 					String data[] = mainMenuView.getAllData();
 					int port = Integer.parseInt(data[2]);
 					
-					// build the server
-					GameMainFrame.this.serverRunnable = new ServerGameRunnable(port);
-					serverThread = new Thread(GameMainFrame.this.serverRunnable);
-					serverThread.start();
+					// build the server, the port is opened first so nothing is started if it's already used
+					TcpTransport tcpTransport = new TcpTransport(port);
+					GameMainFrame.this.serverEngine = new GameEngine("GameEngine-" + port, null);
+					GameMainFrame.this.serverEngine.addTransport(tcpTransport);
 
-					// build the connection
-					Socket socket = new Socket("localhost", port);
-					gameLobbyView.connectToLobby(socket, data[0]);
+					// build the connection, the player who create the lobby is inside
+					// the room with the room code too (the default room if empty)
+					try
+					{
+						ClientConnection connection;
+						if (loopbackEnabled)
+						{
+							LoopbackTransport loopbackTransport = new LoopbackTransport();
+							GameMainFrame.this.serverEngine.addTransport(loopbackTransport);
+							connection = loopbackTransport.connect();
+						}
+						else
+						{
+							connection = new SocketClientConnection(new Socket("localhost", port));
+						}
+						gameLobbyView.connectToLobby(connection, data[0], data[3]);
+					}
+					catch (IOException exception)
+					{
+						// the player can't join their own server, stop it so the port
+						// could be used again when the player try again
+						GameMainFrame.this.serverEngine.shutdown();
+						throw exception;
+					}
 					
 					GameMainFrame.this.createdLobby = true;
 				}
@@ -110,7 +137,7 @@ public class GameMainFrame extends JFrame {
 				{
 					// destroy lobby if the player is the one who created the server
 					// likely will not happen, but maybe just in case
-					GameMainFrame.this.serverRunnable.deleteServer();
+					GameMainFrame.this.serverEngine.shutdown();
 					GameMainFrame.this.createdLobby = false;						
 				}					
 			}
@@ -3,7 +3,6 @@ package game;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
-import java.awt.Graphics;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
@@ -14,11 +13,11 @@ import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeListener;
 
 public class GameView extends JPanel implements ResetableView {
@@ -32,9 +31,8 @@ public class GameView extends JPanel implements ResetableView {
 	private JPanel playerListPanel = new JPanel();
 	private JScrollPane playerListScrollPanel = new JScrollPane(this.playerListPanel);
 	
-	// panel for chat by player and text field to enter text by player
-	private JPanel chatPanel = new JPanel();
-	private JScrollPane chatScrollPanel = new JScrollPane(this.chatPanel);
+	// list of chat by player and broadcast from server, and text field to enter text by player
+	private ChatList chatList = new ChatList(320, 480);
 	private RTextField chatColumn = new RTextField(512);
 	
 	// label information time, word, and the player who is currently drawing the image
@@ -53,51 +51,19 @@ public class GameView extends JPanel implements ResetableView {
 	// canvas where the player draw their image
 	private Canvas canvas;
 	
-	// word to be shown on top of the frame (on wordLabel)
-	private String word = null;
-	
 	// name of the player
 	private String playerName;
 	
 	// time to be showed on the timeLabel on top left frame (turn remaining time)
 	private int time = 0;
 	
-	// runnable to be run on the Event Dispatcher Thread for auto scroll when there's 
-	// chat or broadcast from the server added to the chat list if the chat scroll
-	// already at the bottom
-	private Runnable autoScrollChatRunnable = new Runnable() {
-		
-		@Override
-		public void run() {
-			chatScrollPanel.getVerticalScrollBar().setValue(
-					chatScrollPanel.getVerticalScrollBar().getMaximum()
-			);
-		}
-	};
-	
-	// runnable to be run on the Event Dispatcher Thread to update the word that shown
-	// on wordLabel at top frame (word of object to be guessed or drawn, could also the hint word)
-	private Runnable wordUpdateRunnable = new Runnable() {
-		
-		@Override
-		public void run() {
-			wordLabel.setText(word);
-			wordLabel.revalidate();
-			wordLabel.repaint();
-			word = null;
-		}
-	};
-	
-	// runnable to be run on the Event Dispatcher Thread to update the label of time remaining
-	// of the current turn
-	private Runnable timeUpdateRunnable = new Runnable() {
-		
-		@Override
-		public void run() {
-			timeLabel.setText("Time: " + String.valueOf(time));
-			
-		}
-	};
+	// count down of the turn when the server send the end of the turn (protocol version 2),
+	// the label is updated by the timer using the client clock, deadline is the end
+	// of the turn (client time) and duration is the length of the turn (in milliseconds)
+	private static final int COUNTDOWN_INTERVAL = 200;
+	private volatile long deadline = 0;
+	private volatile int duration = 0;
+	private Timer countdownTimer = new Timer(COUNTDOWN_INTERVAL, e -> this.updateCountdown());
 	
 	// reset the background of the panel of the player list to give
 	// different color for our player name
@@ -129,12 +95,12 @@ public class GameView extends JPanel implements ResetableView {
 	 * Constructor for the game view, initializing the component and build the UI
 	 * @param listenerForGameView : listener for chat column and the button color picker and eraser
 	 * @param listenerForThicknessSlider : listener for JSlider thickness
-	 * @param image : list of integer that will be translated to image and shown at canvas
+	 * @param image : code that will be translated to image and shown at canvas
 	 * @param mouseClickListenerForTheCanvas : listener for the mouse click inside the canvas
 	 * @param mouseMotionListenerForTheCanvas : listener for the mouse movement inside the canvas
 	 */
 	public GameView(ActionListener listenerForGameView, ChangeListener listenerForThicknessSlider, 
-			List<Integer> image, MouseListener mouseClickListenerForTheCanvas, 
+			StrokeBuffer image, MouseListener mouseClickListenerForTheCanvas, 
 			MouseMotionListener mouseMotionListenerForTheCanvas)
 	{
 		// Creating the UI
@@ -153,13 +119,8 @@ public class GameView extends JPanel implements ResetableView {
 		this.playerListScrollPanel.getVerticalScrollBar().setUnitIncrement(16);
 		this.add(this.playerListScrollPanel);
 		
-		this.chatPanel.setSize(320, 480);
-		this.chatPanel.setLayout(new BoxLayout(this.chatPanel, BoxLayout.Y_AXIS));
-		
-		this.chatScrollPanel.setLocation(960, 176);
-		this.chatScrollPanel.setSize(320, 480);
-		this.chatScrollPanel.getVerticalScrollBar().setUnitIncrement(16);
-		this.add(this.chatScrollPanel);
+		this.chatList.setLocation(960, 176);
+		this.add(this.chatList);
 		
 		this.chatColumn.setLocation(960, 656);
 		this.chatColumn.setSize(320, 32);
@@ -235,105 +196,122 @@ public class GameView extends JPanel implements ResetableView {
 	}
 	
 	/**
-	 * Add chat or broadcast from server to the chat list
-	 * @param player : name of the player who send the chat
-	 * @param text : text of the chat or broadcast that will be added to chat list
-	 * @param broadcast : indicate if the text is broadcast from the server or not
+	 * Add chat or broadcast from server to the chat list, must be called on Event Dispatcher Thread
+	 * @param chats : new chat from the player or broadcast from the server
+	 */
+	public void addChat(List<ChatMessage> chats)
+	{
+		this.chatList.addChat(chats);
+	}
+	
+	/**
+	 * Show the player name and their score on the player list, ordered like the player
+	 * list of GameData, must be called on Event Dispatcher Thread
+	 * @param playerList : list of PlayerData consisting their name, score and round trip time
+	 * @param playerName : name of our player
 	 */
-	public void addChat(String player, String text, boolean broadcast)
+	public void showPlayers(List<PlayerData> playerList, String playerName)
 	{
-		JScrollBar chatScroll = this.chatScrollPanel.getVerticalScrollBar();
-		int scrollValue = chatScroll.getValue();
-		int scrollMax = chatScroll.getMaximum() - 477;
+		this.playerName = playerName;
 		
-		synchronized (chatPanel) 
+		// the label is reused, just add or remove the label at the end of the list
+		while (this.playerListPanel.getComponentCount() > playerList.size())
 		{
-			if (broadcast)
-			{
-				// broadcast, add the whole text without any change
-				this.chatPanel.add(
-						new ChatCard(
-								"<html>" + text + "</html>"
-								)
-						);
+			this.playerListPanel.remove(this.playerListPanel.getComponentCount() - 1);
+		}
+		while (this.playerListPanel.getComponentCount() < playerList.size())
+		{
+			JLabel newPlayer = new JLabel();
+			newPlayer.setFont(this.fontForAllText);
+			newPlayer.setOpaque(true);
+			this.playerListPanel.add(newPlayer);
+		}
+		
+		for (int i = 0; i < playerList.size(); i++)
+		{
+			//show name and the score of the player
+			PlayerData playerData = playerList.get(i);
+			JLabel playerCard = (JLabel) this.playerListPanel.getComponent(i);
+			playerCard.setText(playerCardText(playerData));
+			
+			if (playerData.getName().compareTo(playerName) == 0)
+			{	
+				playerCard.setBackground(GameData.playerColor);
 			}
 			else
 			{
-				// show chat with their player name
-				this.chatPanel.add(
-						new ChatCard(
-								"<html>" + player + ":<br>" + text + "</html>"
-								)
-						);
-			}			
+				playerCard.setBackground(null);
+			}
 		}
 		
-		this.chatPanel.revalidate();
-		this.chatPanel.repaint();
-		this.chatScrollPanel.revalidate();
-		this.chatScrollPanel.repaint();
-		
-		// auto scroll
-		if (scrollValue == scrollMax)
-		{
-			SwingUtilities.invokeLater(this.autoScrollChatRunnable);
-		}
+		// repaint the list
+		this.playerListPanel.revalidate();
+		this.playerListPanel.repaint();
 	}
 	
 	/**
-	 * Add player name on the player list (called when going inside the game view) after
-	 * receiving start game instruction from server
-	 * @param playerList : list of PlayerData consisting their name 
-	 * @param playerName : name of our player
+	 * Get the text shown on the player list for the player
+	 * @param playerData : data of the player
+	 * @return name, score and round trip time (if known) of the player
 	 */
-	public void addPlayer(List<PlayerData> playerList, String playerName)
+	private static String playerCardText(PlayerData playerData)
 	{
-		this.playerName = playerName;
-		synchronized (playerList) 
+		String text = playerData.getName() + " - score: " + playerData.getScore();
+		if (playerData.getLatency() >= 0)
 		{
-			synchronized (playerListPanel) 
-			{
-				JLabel newPlayer;
-				for (PlayerData playerData : playerList) {
-					//show name and the score of the player
-					newPlayer = new JLabel(playerData.getName() + " - score: " + playerData.getScore());
-					newPlayer.setFont(this.fontForAllText);
-					newPlayer.setOpaque(true);
-					this.playerListPanel.add(newPlayer);
-					
-					if (playerData.getName().compareTo(playerName) == 0)
-					{	
-						newPlayer.setBackground(GameData.playerColor);
-					}
-				}
-				
-				// repaint the list
-				this.playerListScrollPanel.revalidate();
-				this.playerListScrollPanel.repaint();
-				this.playerListPanel.repaint();
-				this.playerListPanel.revalidate();
-			}
+			text += " - " + playerData.getLatency() + " ms";
 		}
+		return text;
 	}
 	
 	/**
-	 * Update the remaining time of the current turn and show it on the screen
+	 * Update the remaining time of the current turn and show it on the screen,
+	 * must be called on Event Dispatcher Thread
 	 * @param time : new remaining time
 	 */
 	public void setTime(int time)
 	{
 		this.time = time;
-		SwingUtilities.invokeLater(this.timeUpdateRunnable);
+		this.timeLabel.setText("Time: " + String.valueOf(time));
 	}
 	
 	/**
-	 * Update the word that will be showed at wordLabel at top of screen
+	 * Start count down the remaining time of the current turn, the label
+	 * is updated until the time reach 0, must be called on Event Dispatcher Thread
+	 * @param deadline : end of the turn (client time, milliseconds since epoch)
+	 * @param duration : length of the turn (in milliseconds)
+	 */
+	public void startCountdown(long deadline, int duration)
+	{
+		this.deadline = deadline;
+		this.duration = duration;
+		this.countdownTimer.restart();
+		this.updateCountdown();
+	}
+	
+	/**
+	 * Show the remaining time of the count down, called by the timer on the Event Dispatcher Thread
+	 */
+	private void updateCountdown()
+	{
+		// the remaining time is never more than the turn (if the clock is not the same)
+		long remaining = Math.max(0, Math.min(this.duration, this.deadline - System.currentTimeMillis()));
+		this.time = (int) (remaining / 1000);
+		this.timeLabel.setText("Time: " + String.valueOf(this.time));
+		if (remaining == 0)
+		{
+			this.countdownTimer.stop();
+		}
+	}
+	
+	/**
+	 * Update the word that will be showed at wordLabel at top of screen,
+	 * must be called on Event Dispatcher Thread
 	 * @param word : word to be showed
 	 */
 	public void setWord(String word)
 	{
-		this.word = word;
-		SwingUtilities.invokeLater(this.wordUpdateRunnable);
+		this.wordLabel.setText(word);
 	}
 	
 	/**
@@ -355,51 +333,6 @@ public class GameView extends JPanel implements ResetableView {
 		this.colorPickerButton.setBackground(buttonColor);
 	}
 	
-	/**
-	 * Remove player from the player list
-	 * @param index : index of the player to be removed
-	 */
-	public void removePlayer(int index)
-	{
-		// must synchronized playerListPanel to prevent race
-		synchronized (this.playerListPanel) 
-		{
-			if (index < this.playerListPanel.getComponentCount())
-			{
-				// remove the player name
-				this.playerListPanel.remove(index);
-
-				// repaint the list
-				this.playerListScrollPanel.revalidate();
-				this.playerListScrollPanel.repaint();
-				this.playerListPanel.repaint();
-				this.playerListPanel.revalidate();
-			}			
-		}
-	}
-	
-	/**
-	 * Update the playerListPanel to show their new score
-	 * @param playerList : list of PlayerData consisting their name and their score
-	 */
-	public void updatePlayer(List<PlayerData> playerList)
-	{
-		synchronized (playerList) 
-		{
-			Component playerCard[] = this.playerListPanel.getComponents();
-			for (int i = 0; i < playerList.size(); i++)
-			{
-				((JLabel)playerCard[i]).setText(playerList.get(i).getName() + " - score: " + playerList.get(i).getScore());
-			}
-			
-			// repaint the list
-			this.playerListScrollPanel.revalidate();
-			this.playerListScrollPanel.repaint();
-			this.playerListPanel.repaint();
-			this.playerListPanel.revalidate();
-		}
-	}
-	
 	/**
 	 * Reset the color of the our player panel color
 	 * 
@@ -411,24 +344,31 @@ public class GameView extends JPanel implements ResetableView {
 	}
 	
 	/**
-	 * Change the label name showing the name of the player who is drawing in the current turn
+	 * Change the label name showing the name of the player who is drawing in the current turn,
+	 * must be called on Event Dispatcher Thread
 	 * @param name : name of the player who is currently drawing in this turn
 	 */
 	public void setPlayerTurn(String name)
 	{
-		synchronized (this.playerTurn) 
-		{
-			this.playerTurn.setText("Turn: " + name);
-		}
+		this.playerTurn.setText("Turn: " + name);
 	}
 	
-	@Override
-	protected void paintComponent(Graphics g)
+	/**
+	 * Remove the image shown at the canvas, used when the image data is cleared (next turn),
+	 * must be called on Event Dispatcher Thread
+	 */
+	public void clearCanvas()
 	{
-		super.paintComponent(g);
-		
-		// also calling repaint for the canvas
-		this.canvas.repaint();
+		this.canvas.clearImage();
+	}
+	
+	/**
+	 * Show the new line of the image at the canvas, only the canvas area
+	 * of the new line is repainted, could be called from any thread
+	 */
+	public void repaintCanvas()
+	{
+		this.canvas.repaintNewCodes();
 	}
 
 	@Override
@@ -436,14 +376,16 @@ public class GameView extends JPanel implements ResetableView {
 		
 		// reset the view, reset all label and text field, player list panel, chat panel
 		this.chatColumn.setText("");
-		this.chatPanel.removeAll();
+		this.chatList.clear();
 		this.playerListPanel.removeAll();
 		this.playerTurn.setText("");
 		this.wordLabel.setText("");
 		this.thicknessSlider.setValue(1);
 		
+		this.countdownTimer.stop();
 		this.time = 0;
 		this.timeLabel.setText("TIME");
 		this.updateColor(Color.BLACK);
+		this.canvas.clearImage();
 	}
 }
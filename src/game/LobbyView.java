@@ -3,15 +3,14 @@ package game;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.ActionListener;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
-import javax.swing.SwingUtilities;
 
 /**
  * View for the lobby
@@ -27,9 +26,8 @@ public class LobbyView extends JPanel implements ResetableView {
 	private JPanel playerListPanel = new JPanel();
 	private JScrollPane playerList = new JScrollPane(this.playerListPanel);
 	
-	// panel for chat by player and text field to enter text by player
-	private JPanel chatPanel = new JPanel();
-	private JScrollPane chatScrollPanel = new JScrollPane(this.chatPanel);
+	// list of chat by player and text field to enter text by player
+	private ChatList chatList = new ChatList(288, 320);
 	private RTextField chatColumn = new RTextField(512);
 	
 	// buttons
@@ -39,18 +37,6 @@ public class LobbyView extends JPanel implements ResetableView {
 	// font for all text (button, label, everything)
 	private Font fontForAllText = new Font("Arial", Font.BOLD, 16);
 	
-	// Runnable to be run on Event Dispatcher Thread to update the chat scroll panel
-	// for auto scroll when adding new chat to the list if the scroll already at the bottom
-	private Runnable updateScrollRunnable = new Runnable() {
-		
-		@Override
-		public void run() {
-			chatScrollPanel.getVerticalScrollBar().setValue(
-					chatScrollPanel.getVerticalScrollBar().getMaximum()
-			);
-		}
-	};
-
 	/**
 	 * Constructor for the class, creating the view
 	 * @param listener : listener for the back button
@@ -68,13 +54,8 @@ public class LobbyView extends JPanel implements ResetableView {
 		this.playerList.setHorizontalScrollBar(null);
 		this.add(playerList);
 		
-		this.chatPanel.setSize(288, 288);
-		this.chatPanel.setLayout(new BoxLayout(this.chatPanel, BoxLayout.Y_AXIS));
-		
-		this.chatScrollPanel.setLocation(640, 120);
-		this.chatScrollPanel.setSize(288, 320);
-		this.chatScrollPanel.getVerticalScrollBar().setUnitIncrement(16);
-		this.add(chatScrollPanel);
+		this.chatList.setLocation(640, 120);
+		this.add(chatList);
 		
 		this.chatColumn.setLocation(640, 440);
 		this.chatColumn.setSize(288, 32);
@@ -106,65 +87,46 @@ public class LobbyView extends JPanel implements ResetableView {
 	}
 	
 	/**
-	 * Adding new player name to the player list panel sorted by index ascending from top
-	 * @param index : index of the player
-	 * @param playerName : name of the player
+	 * Show the player inside the player list panel, ordered like the player list
+	 * of GameData (sorted by ID ascending from top), must be called on Event Dispatcher Thread
+	 * @param playerList : list of the player
+	 * @param playerName : name of our player
 	 */
-	public void addPlayer(int index, String playerName, boolean thisPlayer)
+	public void showPlayers(List<PlayerData> playerList, String playerName)
 	{
-		// must synchronized playerListPanel to prevent race
-		synchronized (this.playerListPanel) 
+		// the label is reused, just add or remove the label at the end of the list
+		while (this.playerListPanel.getComponentCount() > playerList.size())
 		{
-			JLabel newPlayer;
-			
-			while (this.playerListPanel.getComponentCount() <= index)
-			{
-				// adding empty label if the player name still not loaded
-				newPlayer = new JLabel("Loading...");
-				newPlayer.setFont(fontForAllText);
-				this.playerListPanel.add(newPlayer);
-			}
-			
-			// set the name of the label
-			newPlayer = (JLabel)this.playerListPanel.getComponent(index);
-			newPlayer.setText(playerName);
+			this.playerListPanel.remove(this.playerListPanel.getComponentCount() - 1);
+		}
+		while (this.playerListPanel.getComponentCount() < playerList.size())
+		{
+			JLabel newPlayer = new JLabel();
+			newPlayer.setFont(fontForAllText);
+			newPlayer.setOpaque(true);
+			this.playerListPanel.add(newPlayer);
+		}
+		
+		for (int i = 0; i < playerList.size(); i++)
+		{
+			JLabel playerCard = (JLabel) this.playerListPanel.getComponent(i);
+			String name = playerList.get(i).getName();
+			playerCard.setText(name);
 			
-			if (thisPlayer)
+			// our player has different color
+			if (name.compareTo(playerName) == 0)
 			{
-				newPlayer.setOpaque(true);
-				newPlayer.setBackground(new Color(53, 255, 88));
+				playerCard.setBackground(GameData.playerColor);
 			}
-			
-			// repaint the list
-			this.playerList.revalidate();
-			this.playerList.repaint();
-			this.playerListPanel.repaint();
-			this.playerListPanel.revalidate();
-		}
-	}
-	
-	/**
-	 * Remove player from it's index in player list
-	 * @param index : index of the player
-	 */
-	public void removePlayer(int index)
-	{
-		// must synchronized playerListPanel to prevent race
-		synchronized (this.playerListPanel) 
-		{
-			if (index < this.playerListPanel.getComponentCount())
+			else
 			{
-				// remove the player name
-				this.playerListPanel.remove(index);
-
-				// repaint the list
-				this.playerList.revalidate();
-				this.playerList.repaint();
-				this.playerListPanel.repaint();
-				this.playerListPanel.revalidate();
+				playerCard.setBackground(null);
 			}
-			
 		}
+		
+		// repaint the list
+		this.playerListPanel.revalidate();
+		this.playerListPanel.repaint();
 	}
 	
 	public String getChatUserWrite()
@@ -175,47 +137,19 @@ public class LobbyView extends JPanel implements ResetableView {
 	}
 	
 	/**
-	 * Adding chat from player in the chat list
-	 * @param player
-	 * @param text
+	 * Adding chat from player in the chat list, must be called on Event Dispatcher Thread
+	 * @param chats : new chat from the player
 	 */
-	public void addChat(String player, String text)
+	public void addChat(List<ChatMessage> chats)
 	{
-		synchronized (this.chatPanel) 
-		{
-			String textCombination = "<html>" + player + ":<br>" + text + "</html>";
-			
-			JScrollBar chatScrollBar = this.chatScrollPanel.getVerticalScrollBar();
-			
-			int scrollValue = chatScrollBar.getValue();
-			int scrollMax = chatScrollBar.getMaximum() - 317;
-			// - 317 because somehow if the scroll bar going to the bottom, the value and the maximum
-			// value is different, the gap was 317, yet the scroll bar already at the bottom
-			
-			// add new chat
-			this.chatPanel.add(new ChatCard(textCombination));
-			this.chatPanel.revalidate();
-			this.chatPanel.repaint();
-			
-			// auto scroll down if the scroll bar at the bottom
-			if (scrollValue == scrollMax)
-			{
-				SwingUtilities.invokeLater(this.updateScrollRunnable);				
-			}
-		}
+		this.chatList.addChat(chats);
 	}
 
 	@Override
 	public void reset() {
 		
 		// deleting all player list and all chat
-		synchronized (this.playerListPanel) 
-		{
-			this.playerListPanel.removeAll();	
-		}
-		synchronized (this.chatPanel) 
-		{
-			this.chatPanel.removeAll();
-		}
+		this.playerListPanel.removeAll();
+		this.chatList.clear();
 	}
 }
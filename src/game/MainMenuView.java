@@ -25,11 +25,13 @@ public class MainMenuView extends JPanel implements ResetableView {
 	private JLabel nameLabel = new JLabel("Name");
 	private JLabel hostLabel = new JLabel("Hostname");
 	private JLabel portLabel = new JLabel("Port");
+	private JLabel roomLabel = new JLabel("Room Code (optional)");
 	
 	// Text field for player input
 	private RTextField nameTextField = new RTextField(12); // JTextField with maximum character 12
 	private JTextField hostTextField = new JTextField();
 	private JTextField portTextFIeld = new JTextField();
+	private RTextField roomTextField = new RTextField(8); // join code of the room, maximum 8 characters
 	
 	// Button to enter lobby or create lobby
 	private JButton enterLobbyButton = new JButton("Enter Lobby");
@@ -51,6 +53,7 @@ public class MainMenuView extends JPanel implements ResetableView {
 		this.nameLabel.setBackground(null);
 		this.hostLabel.setBackground(null);
 		this.portLabel.setBackground(null);
+		this.roomLabel.setBackground(null);
 		
 		// font for label, button, and text field
 		// the name is very obvious
@@ -88,8 +91,18 @@ public class MainMenuView extends JPanel implements ResetableView {
 		this.portTextFIeld.setFont(fontForAllTextField);
 		this.add(portTextFIeld);
 		
+		this.roomLabel.setLocation(512, 416);
+		this.roomLabel.setSize(320, 32);
+		this.roomLabel.setFont(fontForAllLabelAndButton);
+		this.add(roomLabel);
+		
+		this.roomTextField.setLocation(512, 448);
+		this.roomTextField.setSize(new Dimension(256, 32));
+		this.roomTextField.setFont(fontForAllTextField);
+		this.add(roomTextField);
+		
 		this.enterLobbyButton.setSize(192, 64);
-		this.enterLobbyButton.setLocation(672, 480);
+		this.enterLobbyButton.setLocation(672, 544);
 		this.enterLobbyButton.setFont(fontForAllLabelAndButton);
 		this.enterLobbyButton.setBorder(BorderFactory.createLineBorder(Color.black, 2));
 		this.enterLobbyButton.setFocusable(false);
@@ -100,7 +113,7 @@ public class MainMenuView extends JPanel implements ResetableView {
 		this.add(enterLobbyButton);
 		
 		this.createLobbyButton.setSize(192, 64);
-		this.createLobbyButton.setLocation(416, 480);
+		this.createLobbyButton.setLocation(416, 544);
 		this.createLobbyButton.setFont(fontForAllLabelAndButton);
 		this.createLobbyButton.setBorder(BorderFactory.createLineBorder(Color.black, 2));
 		this.createLobbyButton.setFocusable(false);
@@ -114,15 +127,17 @@ public class MainMenuView extends JPanel implements ResetableView {
 	
 	/**
 	 * Get all data inside text field written by player
-	 * @return array of string with length 3 consisting data from all text field
+	 * @return array of string with length 4 consisting data from all text field
+	 * (name, host, port, room code)
 	 */
 	public String[] getAllData()
 	{
-		String data[] = new String[3];
+		String data[] = new String[4];
 		
 		data[0] = this.nameTextField.getText();
 		data[1] = this.hostTextField.getText();
 		data[2] = this.portTextFIeld.getText();
+		data[3] = this.roomTextField.getText();
 		
 		return data;
 	}
@@ -134,5 +149,6 @@ public class MainMenuView extends JPanel implements ResetableView {
 		this.nameTextField.setText("");
 		this.hostTextField.setText("");
 		this.portTextFIeld.setText("");
+		this.roomTextField.setText("");
 	}
 }
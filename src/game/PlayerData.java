@@ -8,22 +8,50 @@ package game;
  */
 public class PlayerData implements Comparable<PlayerData> {
 	
+	// ID of the player given by the server (the index of the player if the server
+	// use protocol version 1)
+	private int id;
+	
 	// name of the player
 	private String name;
 	
 	// score of the player
 	private int score = 0;
 	
+	// round trip time of the player sent by the server (in milliseconds), -1 if not known
+	private int latency = -1;
+	
 	/**
 	 * Constructor for the player data
+	 * @param id : ID of the player
 	 * @param name : name of the player
 	 */
-	public PlayerData(String name)
+	public PlayerData(int id, String name)
 	{
+		this.id = id;
 		this.name = name;
 		this.score = 0; // score set to 0 by default
 	}
 	
+	/**
+	 * Get ID of the player
+	 * @return ID of the player
+	 */
+	public int getId()
+	{
+		return this.id;
+	}
+	
+	/**
+	 * Change ID of the player, used when the player before them left
+	 * and the ID is the index of the player (protocol version 1)
+	 * @param id : the new ID
+	 */
+	public void setId(int id)
+	{
+		this.id = id;
+	}
+	
 	/**
 	 * Get name of the player
 	 * @return player name string
@@ -51,6 +79,24 @@ public class PlayerData implements Comparable<PlayerData> {
 		this.score += addition;
 	}
 
+	/**
+	 * Get round trip time of the player
+	 * @return round trip time in milliseconds, -1 if not known
+	 */
+	public int getLatency()
+	{
+		return this.latency;
+	}
+	
+	/**
+	 * Set round trip time of the player
+	 * @param latency : round trip time in milliseconds
+	 */
+	public void setLatency(int latency)
+	{
+		this.latency = latency;
+	}
+	
 	@Override
 	public int compareTo(PlayerData o) 
 	{
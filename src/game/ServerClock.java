@@ -0,0 +1,69 @@
+package game;
+
+/**
+ * Estimation of the difference between the clock of the server and the clock of this client,
+ * taken from the server time inside the test byte (protocol version 2)<br>
+ * The server time arrive late by the network delay, so every sample is smaller than the real
+ * difference, the biggest of the last few samples is the one with the least delay
+ * @author Toshiba
+ *
+ */
+public class ServerClock {
+
+	// amount of the last sample used for the estimation
+	private static final int SAMPLE_COUNT = 8;
+
+	// the last samples (server time - client time when received, in milliseconds),
+	// next is the index for the next sample and count is amount of sample saved
+	private long samples[] = new long[SAMPLE_COUNT];
+	private int next = 0;
+	private int count = 0;
+
+	/**
+	 * Add the server time that just received
+	 * @param serverTime : time of the server (milliseconds since epoch)
+	 */
+	public synchronized void addSample(long serverTime)
+	{
+		this.samples[this.next] = serverTime - System.currentTimeMillis();
+		this.next = (this.next + 1) % SAMPLE_COUNT;
+		this.count = Math.min(this.count + 1, SAMPLE_COUNT);
+	}
+
+	/**
+	 * Get the difference between the server clock and the client clock
+	 * @return server time - client time (in milliseconds), 0 if there's no sample yet
+	 */
+	public synchronized long getOffset()
+	{
+		if (this.count == 0)
+		{
+			return 0;
+		}
+		long offset = this.samples[0];
+		for (int i = 1; i < this.count; i++)
+		{
+			offset = Math.max(offset, this.samples[i]);
+		}
+		return offset;
+	}
+
+	/**
+	 * Change the server time to the time of this client
+	 * @param serverTime : time of the server (milliseconds since epoch)
+	 * @return the same time for the client clock
+	 */
+	public long toLocalTime(long serverTime)
+	{
+		return serverTime - this.getOffset();
+	}
+
+	/**
+	 * Forget all sample, used when connecting to other server
+	 */
+	public synchronized void reset()
+	{
+		this.next = 0;
+		this.count = 0;
+	}
+}
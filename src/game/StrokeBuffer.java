@@ -0,0 +1,179 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of int storing the code of the image (see Canvas for the format),
+ * replacing the list of Integer so one code is 4 bytes instead of one object<br>
+ * The code is only added at the end or all code is removed (next turn), the writer
+ * (the thread reading from the server) must synchronized this buffer, the reader
+ * (Canvas) doesn't lock anything but take the view of the buffer with Reader
+ * @author Toshiba
+ *
+ */
+public class StrokeBuffer {
+
+	// size of the array after the buffer is cleared
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// the code, the array is replaced by the bigger copy when it's full and by the new
+	// array when the buffer is cleared, so the code before size is never changed
+	private volatile int codes[] = new int[INITIAL_CAPACITY];
+	private volatile int size = 0;
+
+	// increased before and after the buffer is cleared, odd while clearing,
+	// used by the reader to know the buffer is cleared
+	private volatile int generation = 0;
+
+	/**
+	 * Add one code at the end
+	 * @param code : the code
+	 */
+	public synchronized void add(int code)
+	{
+		int size = this.size;
+		int codes[] = this.ensureCapacity(size + 1);
+		codes[size] = code;
+		this.size = size + 1;
+	}
+
+	/**
+	 * Add two code (one point of the line) at the end
+	 * @param x : x coordinate
+	 * @param y : y coordinate
+	 */
+	public synchronized void add(int x, int y)
+	{
+		int size = this.size;
+		int codes[] = this.ensureCapacity(size + 2);
+		codes[size] = x;
+		codes[size + 1] = y;
+		this.size = size + 2;
+	}
+
+	/**
+	 * Add all code from the array at the end
+	 * @param data : the code
+	 */
+	public synchronized void add(int data[])
+	{
+		int size = this.size;
+		int codes[] = this.ensureCapacity(size + data.length);
+		System.arraycopy(data, 0, codes, size, data.length);
+		this.size = size + data.length;
+	}
+
+	/**
+	 * Remove all code, the array already taken by the reader is not changed
+	 */
+	public synchronized void clear()
+	{
+		this.generation += 1;
+		this.codes = new int[INITIAL_CAPACITY];
+		this.size = 0;
+		this.generation += 1;
+	}
+
+	/**
+	 * Get amount of code
+	 * @return amount of code
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Make sure the array could contain the amount of code, must be called when synchronized
+	 * @param capacity : amount of code needed
+	 * @return the array
+	 */
+	private int[] ensureCapacity(int capacity)
+	{
+		int codes[] = this.codes;
+		if (capacity > codes.length)
+		{
+			// the reader still could use the old array, the code inside is the same
+			codes = Arrays.copyOf(codes, Math.max(capacity, codes.length * 2));
+			this.codes = codes;
+		}
+		return codes;
+	}
+
+	/**
+	 * View of the buffer used by one reader, updated by the reader when it want to see
+	 * the new code, the code inside the view is never changed by the writer
+	 */
+	public static class Reader {
+
+		// the buffer read by this reader
+		private StrokeBuffer buffer;
+
+		// the code and its amount when the view is last updated
+		private int codes[] = new int[0];
+		private int size = 0;
+		private int generation = 0;
+
+		/**
+		 * Constructor for the reader
+		 * @param buffer : the buffer read by this reader
+		 */
+		public Reader(StrokeBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Take the code added to the buffer since the last update
+		 * @return true if the buffer is cleared since the last update
+		 * (the code before must be forgotten)
+		 */
+		public boolean update()
+		{
+			while (true)
+			{
+				int generation = this.buffer.generation;
+				if ((generation & 1) != 0)
+				{
+					// the buffer is being cleared
+					Thread.onSpinWait();
+					continue;
+				}
+
+				// size is read before the array, the array read after it always has the code
+				int size = this.buffer.size;
+				int codes[] = this.buffer.codes;
+				if (this.buffer.generation != generation)
+				{
+					// cleared while reading, read again
+					continue;
+				}
+
+				boolean cleared = generation != this.generation;
+				this.codes = codes;
+				this.size = size;
+				this.generation = generation;
+				return cleared;
+			}
+		}
+
+		/**
+		 * Get amount of code inside the view
+		 * @return amount of code
+		 */
+		public int size()
+		{
+			return this.size;
+		}
+
+		/**
+		 * Get the code inside the view
+		 * @param index : position of the code, must be less than size()
+		 * @return the code
+		 */
+		public int get(int index)
+		{
+			return this.codes[index];
+		}
+	}
+}
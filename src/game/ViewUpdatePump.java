@@ -0,0 +1,352 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Change of the lobby view and game view waiting to be shown<br>
+ * The thread reading from the server doesn't touch the Swing component, it update
+ * GameData and tell this class what is changed, then the change received within one
+ * display frame is shown together by the timer on the Event Dispatcher Thread, so
+ * the layout and the repaint is done at most once per frame however fast the
+ * instruction arrived. The player list is always built from GameData, so only
+ * the last state of the list is shown
+ * @author Toshiba
+ *
+ */
+public class ViewUpdatePump {
+
+	// the change is shown at most once for every interval (in milliseconds), taken from
+	// system property skribbl.client.viewUpdateInterval (default 16, 60 frame per second)
+	public static final String PROPERTY_INTERVAL = "skribbl.client.viewUpdateInterval";
+	private static final int INTERVAL = Math.max(1, Integer.getInteger(PROPERTY_INTERVAL, 16));
+
+	// the views and the data shown by them
+	private GameLobbyView gameLobbyView;
+	private LobbyView lobbyView;
+	private GameView gameView;
+	private GameData gameData;
+
+	// name of our player, to give different color on the player list
+	private volatile String playerName = "";
+
+	// the change not yet shown, changed when synchronized this
+	private boolean resetRequested = false; // both view must be reset and lobby view shown
+	private boolean inGame = false; // true if the game view must be shown (after start instruction)
+	private boolean viewChanged = false; // true if the game view is not yet shown after the start instruction
+	private boolean playersChanged = false; // true if the player list must be built again from GameData
+	private ArrayList<ChatMessage> chats = new ArrayList<ChatMessage>(); // new chat for the current view
+	private ArrayList<ChatMessage> spareChats = new ArrayList<ChatMessage>(); // swapped with chats when shown
+	private String word = null; // new word on top of the game view, null if not changed
+	private int time = -1; // new remaining time of the turn, -1 if not changed
+	private String playerTurn = null; // name of the player who is drawing, null if not changed
+	private boolean canvasCleared = false; // true if the image of the canvas must be removed (next turn)
+	private long deadline = 0; // new end of the turn (client time), 0 if not changed
+	private int duration = 0; // length of the turn with the new deadline (in milliseconds)
+
+	// the timer is started for the first change after the last frame, frameRequested
+	// is true if the timer is already started
+	private Timer frameTimer;
+	private AtomicBoolean frameRequested = new AtomicBoolean(false);
+
+	/**
+	 * Constructor for the pump
+	 * @param gameLobbyView : the view showing lobby view or game view
+	 * @param lobbyView : view for the lobby
+	 * @param gameView : view for the game
+	 * @param gameData : data of the game shown by the views
+	 */
+	public ViewUpdatePump(GameLobbyView gameLobbyView, LobbyView lobbyView, GameView gameView, GameData gameData)
+	{
+		this.gameLobbyView = gameLobbyView;
+		this.lobbyView = lobbyView;
+		this.gameView = gameView;
+		this.gameData = gameData;
+
+		this.frameTimer = new Timer(INTERVAL, e -> this.showChanges());
+		this.frameTimer.setRepeats(false);
+	}
+
+	/**
+	 * Set the name of our player
+	 * @param playerName : name of our player
+	 */
+	public void setPlayerName(String playerName)
+	{
+		this.playerName = playerName;
+	}
+
+	/**
+	 * Reset both view and show the lobby view, the change not yet shown is forgotten,
+	 * shown immediately if called from the Event Dispatcher Thread
+	 */
+	public void reset()
+	{
+		synchronized (this)
+		{
+			this.resetRequested = true;
+			this.inGame = false;
+			this.viewChanged = false;
+			this.playersChanged = true;
+			this.chats.clear();
+			this.word = null;
+			this.time = -1;
+			this.playerTurn = null;
+			this.canvasCleared = false;
+			this.deadline = 0;
+		}
+
+		if (SwingUtilities.isEventDispatchThread())
+		{
+			this.showChanges();
+		}
+		else
+		{
+			this.requestFrame();
+		}
+	}
+
+	/**
+	 * Show the game view (start instruction), the chat of the lobby not yet shown is forgotten
+	 */
+	public void showGameView()
+	{
+		synchronized (this)
+		{
+			this.inGame = true;
+			this.viewChanged = true;
+			this.playersChanged = true;
+			this.chats.clear();
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Tell the pump the player inside GameData is changed (joined, left, score, latency)
+	 */
+	public void playersChanged()
+	{
+		synchronized (this)
+		{
+			this.playersChanged = true;
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Add chat to the chat list of the current view
+	 * @param chat : the chat
+	 */
+	public void addChat(ChatMessage chat)
+	{
+		synchronized (this)
+		{
+			this.chats.add(chat);
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Change the word on top of the game view
+	 * @param word : the word
+	 */
+	public void setWord(String word)
+	{
+		synchronized (this)
+		{
+			this.word = word;
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Change the remaining time of the turn on the game view
+	 * @param time : remaining time (in seconds)
+	 */
+	public void setTime(int time)
+	{
+		synchronized (this)
+		{
+			this.time = Math.max(0, time);
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Change the name of the player who is drawing on the game view
+	 * @param name : name of the player
+	 */
+	public void setPlayerTurn(String name)
+	{
+		synchronized (this)
+		{
+			this.playerTurn = name;
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Start count down the remaining time of the turn on the game view, shown after
+	 * the game view (start instruction) received before it
+	 * @param deadline : end of the turn (client time, milliseconds since epoch)
+	 * @param duration : length of the turn (in milliseconds)
+	 */
+	public void startCountdown(long deadline, int duration)
+	{
+		synchronized (this)
+		{
+			this.deadline = Math.max(1, deadline);
+			this.duration = duration;
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Remove the image shown at the canvas of the game view (next turn)
+	 */
+	public void clearCanvas()
+	{
+		synchronized (this)
+		{
+			this.canvasCleared = true;
+		}
+		this.requestFrame();
+	}
+
+	/**
+	 * Start the timer if it's not yet started since the last frame
+	 */
+	private void requestFrame()
+	{
+		if (this.frameRequested.compareAndSet(false, true))
+		{
+			this.frameTimer.start();
+		}
+	}
+
+	/**
+	 * Show all change received since the last frame, run on the Event Dispatcher Thread
+	 */
+	private void showChanges()
+	{
+		this.frameRequested.set(false);
+
+		// take the change, the thread reading from the server could continue
+		// while the change is shown
+		boolean reset;
+		boolean inGame;
+		boolean viewChanged;
+		boolean playersChanged;
+		ArrayList<ChatMessage> chats;
+		String word;
+		int time;
+		String playerTurn;
+		boolean canvasCleared;
+		long deadline;
+		int duration;
+		synchronized (this)
+		{
+			reset = this.resetRequested;
+			inGame = this.inGame;
+			viewChanged = this.viewChanged;
+			playersChanged = this.playersChanged;
+			chats = this.chats;
+			this.chats = this.spareChats;
+			this.spareChats = chats;
+			word = this.word;
+			time = this.time;
+			playerTurn = this.playerTurn;
+			canvasCleared = this.canvasCleared;
+			deadline = this.deadline;
+			duration = this.duration;
+
+			this.resetRequested = false;
+			this.viewChanged = false;
+			this.playersChanged = false;
+			this.word = null;
+			this.time = -1;
+			this.playerTurn = null;
+			this.canvasCleared = false;
+			this.deadline = 0;
+		}
+
+		if (reset)
+		{
+			this.lobbyView.reset();
+			this.gameView.reset();
+			this.gameLobbyView.setPanel(this.lobbyView);
+		}
+		if (viewChanged && inGame)
+		{
+			// start of the game, the game view is shown with empty canvas and chat
+			this.gameView.reset();
+			this.gameLobbyView.setPanel(this.gameView);
+		}
+
+		// the canvas and the count down is changed after the view is reset, so the
+		// turn received right after the start instruction is not removed by the reset
+		if (canvasCleared)
+		{
+			this.gameView.clearCanvas();
+		}
+		if (deadline > 0)
+		{
+			this.gameView.startCountdown(deadline, duration);
+		}
+
+		if (playersChanged)
+		{
+			// copy the list so GameData could be changed while the list is shown
+			List<PlayerData> players;
+			synchronized (this.gameData.getPlayerList())
+			{
+				players = new ArrayList<PlayerData>(this.gameData.getPlayerList());
+			}
+			if (inGame)
+			{
+				this.gameView.showPlayers(players, this.playerName);
+			}
+			else
+			{
+				this.lobbyView.showPlayers(players, this.playerName);
+			}
+		}
+
+		if (!chats.isEmpty())
+		{
+			if (inGame)
+			{
+				this.gameView.addChat(chats);
+			}
+			else
+			{
+				this.lobbyView.addChat(chats);
+			}
+			chats.clear();
+		}
+
+		if (word != null)
+		{
+			this.gameView.setWord(word);
+		}
+		if (time >= 0)
+		{
+			this.gameView.setTime(time);
+		}
+		if (playerTurn != null)
+		{
+			this.gameView.setPlayerTurn(playerTurn);
+		}
+
+		if (reset || viewChanged)
+		{
+			// the panel is changed, layout once for the new panel
+			this.gameLobbyView.revalidate();
+			this.gameLobbyView.repaint();
+		}
+	}
+}
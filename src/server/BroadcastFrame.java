@@ -0,0 +1,374 @@
+package server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import Utility.UtilityProtocol;
+
+/**
+ * Instruction from server to player that already encoded into bytes<br>
+ * The same instruction sent to many player (chat, drawing data, turn, score, etc)
+ * is encoded only once for every protocol version and the same array is put to the
+ * outbound queue of every player, the array must never be changed after it's created
+ * @author Toshiba
+ *
+ */
+public class BroadcastFrame {
+
+	/**
+	 * Writer for the data of the instruction (without the code)
+	 */
+	private interface Content {
+
+		/**
+		 * Write the data of the instruction
+		 * @param out : output for the data
+		 * @param version : protocol version of the frame
+		 * @throws IOException if failed to write
+		 */
+		void write(DataOutputStream out, int version) throws IOException;
+	}
+
+	// instruction that just consist one byte, created once and reused forever
+	public static final BroadcastFrame TEST_BYTE = new BroadcastFrame((byte) 0, null);
+	public static final BroadcastFrame START_INSTRUCTION = new BroadcastFrame((byte) 4, null);
+	public static final BroadcastFrame RESET_DRAWING = new BroadcastFrame((byte) 8, null);
+	public static final BroadcastFrame STOP_DRAWING = new BroadcastFrame((byte) 11, null);
+	public static final BroadcastFrame GAME_FINISHED = new BroadcastFrame((byte) 13, null);
+
+	// code of the instruction and writer of its data (null if there's no data)
+	private final byte code;
+	private final Content content;
+
+	// writer of the whole instruction (including the code) for protocol version 1, used by
+	// instruction that doesn't exist in version 1 (stroke), null for the other instruction
+	private final Content legacyContent;
+	private final boolean legacyDroppable;
+
+	// the encoded frame for every protocol version, encoded when needed
+	private final byte frames[][] = new byte[UtilityProtocol.VERSION_2 + 1][];
+
+	/**
+	 * Constructor for the frame
+	 * @param code : code of the instruction
+	 * @param content : writer for the data of the instruction, null if there's no data
+	 */
+	private BroadcastFrame(byte code, Content content)
+	{
+		this(code, content, null, false);
+	}
+
+	/**
+	 * Constructor for the frame of instruction that doesn't exist in protocol version 1
+	 * @param code : code of the instruction
+	 * @param content : writer for the data of the instruction
+	 * @param legacyContent : writer for the whole instruction in protocol version 1
+	 * @param legacyDroppable : true if the frame in protocol version 1 could be dropped
+	 */
+	private BroadcastFrame(byte code, Content content, Content legacyContent, boolean legacyDroppable)
+	{
+		this.code = code;
+		this.content = content;
+		this.legacyContent = legacyContent;
+		this.legacyDroppable = legacyDroppable;
+	}
+
+	/**
+	 * Get the encoded frame, the array is shared with every player
+	 * so it must not be changed
+	 * @param version : protocol version used by the player
+	 * @return array of the frame
+	 * @throws IOException if failed to encode the frame
+	 */
+	public synchronized byte[] getBytes(int version) throws IOException
+	{
+		if (this.frames[version] == null)
+		{
+			FrameBuffer buffer = new FrameBuffer();
+			DataOutputStream out = new DataOutputStream(buffer);
+			if (version == UtilityProtocol.VERSION_1 && this.legacyContent != null)
+			{
+				this.legacyContent.write(out, version);
+			}
+			else
+			{
+				out.writeByte(this.code);
+				if (this.content != null)
+				{
+					this.content.write(out, version);
+				}
+			}
+			this.frames[version] = UtilityProtocol.toFrame(buffer.array(), buffer.size(), version);
+		}
+		return this.frames[version];
+	}
+
+	/**
+	 * Check if the frame could be dropped when the outbound queue is full, just drawing
+	 * in protocol version 1 because losing one point of the line doesn't break the game
+	 * (in version 2 the point is difference from the last point, so it can't be dropped)
+	 * @param version : protocol version used by the player
+	 * @return true if the frame could be dropped
+	 */
+	public boolean isDroppable(int version)
+	{
+		if (version == UtilityProtocol.VERSION_1 && this.legacyContent != null)
+		{
+			return this.legacyDroppable;
+		}
+		return this.code == 10;
+	}
+
+	/**
+	 * Send the frame to all connection in the list, player whose connection is already
+	 * closed is ignored because their connection will remove them by itself
+	 * @param connections : list of connection, the current array is read without lock
+	 * @param frame : the frame to be sent
+	 */
+	public static void broadcast(PlayerRegistry connections, BroadcastFrame frame)
+	{
+		for (ServerClientConnection connection : connections.snapshot())
+		{
+			try
+			{
+				connection.sendFrame(frame);
+			}
+			catch (IOException ignored) {}
+		}
+	}
+
+	/**
+	 * Write the player of the instruction, protocol version 1 use the index of the player
+	 * (the index when the frame is created) and version 2 use the player ID
+	 * @param out : output for the data
+	 * @param version : protocol version of the frame
+	 * @param index : index of the player
+	 * @param playerId : ID of the player
+	 * @throws IOException if failed to write
+	 */
+	private static void writePlayer(DataOutputStream out, int version, int index, int playerId) throws IOException
+	{
+		out.writeInt(version == UtilityProtocol.VERSION_2 ? playerId : index);
+	}
+
+	/**
+	 * Create frame of new player (code 1)
+	 * @param player : connection of the new player
+	 * @param name : name of the new player
+	 * @return the frame
+	 */
+	public static BroadcastFrame newPlayer(ServerClientConnection player, String name)
+	{
+		int index = player.getIndex();
+		int playerId = player.getPlayerId();
+		return new BroadcastFrame((byte) 1, (out, version) -> {
+			writePlayer(out, version, index, playerId);
+			UtilityProtocol.writeString(out, name, version);
+		});
+	}
+
+	/**
+	 * Create frame of player who left the game (code 2)
+	 * @param player : connection of the player
+	 * @return the frame
+	 */
+	public static BroadcastFrame removalPlayer(ServerClientConnection player)
+	{
+		int index = player.getIndex();
+		int playerId = player.getPlayerId();
+		return new BroadcastFrame((byte) 2, (out, version) -> writePlayer(out, version, index, playerId));
+	}
+
+	/**
+	 * Create frame of chat from player (code 3)
+	 * @param player : connection of the player who send the chat
+	 * @param chat : chat sent by the player
+	 * @return the frame
+	 */
+	public static BroadcastFrame chat(ServerClientConnection player, String chat)
+	{
+		int index = player.getIndex();
+		int playerId = player.getPlayerId();
+		return new BroadcastFrame((byte) 3, (out, version) -> {
+			writePlayer(out, version, index, playerId);
+			UtilityProtocol.writeString(out, chat, version);
+		});
+	}
+
+	/**
+	 * Create frame of additional score (code 7)
+	 * @param player : connection of the player who get additional score
+	 * @param score : the additional score
+	 * @return the frame
+	 */
+	public static BroadcastFrame score(ServerClientConnection player, int score)
+	{
+		int index = player.getIndex();
+		int playerId = player.getPlayerId();
+		return new BroadcastFrame((byte) 7, (out, version) -> {
+			writePlayer(out, version, index, playerId);
+			out.writeInt(score);
+		});
+	}
+
+	/**
+	 * Create frame of player who is drawing in this turn (code 9)
+	 * @param player : connection of the player
+	 * @return the frame
+	 */
+	public static BroadcastFrame turn(ServerClientConnection player)
+	{
+		int index = player.getIndex();
+		int playerId = player.getPlayerId();
+		return new BroadcastFrame((byte) 9, (out, version) -> writePlayer(out, version, index, playerId));
+	}
+
+	/**
+	 * Create frame of the end of the current turn (TURN_DEADLINE, protocol version 2 only)
+	 * @param deadline : time when the turn is ended (milliseconds since epoch)
+	 * @param duration : duration of the turn (in milliseconds)
+	 * @return the frame
+	 */
+	public static BroadcastFrame turnDeadline(long deadline, int duration)
+	{
+		return new BroadcastFrame(UtilityProtocol.TURN_DEADLINE, (out, version) -> {
+			out.writeLong(deadline);
+			out.writeInt(duration);
+		});
+	}
+
+	/**
+	 * Create frame of the round trip time of the player (PLAYER_LATENCY, protocol version 2 only)
+	 * @param playerIds : ID of the player
+	 * @param latencies : round trip time of the player at the same position (in milliseconds)
+	 * @param count : amount of player inside the arrays
+	 * @return the frame
+	 */
+	public static BroadcastFrame playerLatency(int playerIds[], int latencies[], int count)
+	{
+		return new BroadcastFrame(UtilityProtocol.PLAYER_LATENCY, (out, version) -> {
+			UtilityProtocol.writeVarInt(out, count);
+			for (int i = 0; i < count; i++)
+			{
+				UtilityProtocol.writeVarInt(out, playerIds[i]);
+				UtilityProtocol.writeVarInt(out, latencies[i]);
+			}
+		});
+	}
+
+	/**
+	 * Create frame of drawing data (code 10)
+	 * @param data : thickness, red, green, blue, x coordinate, y coordinate
+	 * @return the frame
+	 */
+	public static BroadcastFrame imageTexture(int data[])
+	{
+		return new BroadcastFrame((byte) 10, (out, version) -> {
+			for (int i : data)
+			{
+				out.writeInt(i);
+			}
+		});
+	}
+
+	/**
+	 * Create frame of stroke records (STROKE), the same stroke is sent as drawing
+	 * instruction (code 10 and 11) to player using protocol version 1
+	 * @param records : stroke records created by StrokeFrameBuilder (real coordinate)
+	 * @param style : thickness, red, green, blue of the stroke before the first record
+	 * @param lastX : x coordinate of the point before the first record
+	 * @param lastY : y coordinate of the point before the first record
+	 * @return the frame
+	 */
+	public static BroadcastFrame stroke(int records[], int style[], int lastX, int lastY)
+	{
+		// version 1 player could lose the point but not the end of the stroke
+		boolean hasEnd = false;
+		for (int i = 0; i < records.length; i += getStrokeRecordLength(records[i]))
+		{
+			hasEnd = hasEnd || records[i] == StrokeFrameBuilder.END;
+		}
+
+		return new BroadcastFrame(UtilityProtocol.STROKE, (out, version) -> {
+			// the point is written as difference from the point before it
+			int x = lastX;
+			int y = lastY;
+			for (int i = 0; i < records.length; i += getStrokeRecordLength(records[i]))
+			{
+				if (records[i] == StrokeFrameBuilder.START)
+				{
+					UtilityProtocol.writeStrokeStart(out, records[i + 1], records[i + 2], records[i + 3], records[i + 4], records[i + 5], records[i + 6]);
+					x = records[i + 5];
+					y = records[i + 6];
+				}
+				else if (records[i] == StrokeFrameBuilder.POINT)
+				{
+					UtilityProtocol.writeStrokePoint(out, records[i + 1] - x, records[i + 2] - y);
+					x = records[i + 1];
+					y = records[i + 2];
+				}
+				else
+				{
+					UtilityProtocol.writeStrokeEnd(out);
+				}
+			}
+		}, (out, version) -> {
+			// every point is code 10 with the style of the stroke and code 11 for the end
+			int currentStyle[] = style.clone();
+			for (int i = 0; i < records.length; i += getStrokeRecordLength(records[i]))
+			{
+				if (records[i] == StrokeFrameBuilder.START)
+				{
+					System.arraycopy(records, i + 1, currentStyle, 0, 4);
+					out.writeByte(10);
+					for (int j = 1; j <= 6; j++)
+					{
+						out.writeInt(records[i + j]);
+					}
+				}
+				else if (records[i] == StrokeFrameBuilder.POINT)
+				{
+					out.writeByte(10);
+					for (int value : currentStyle)
+					{
+						out.writeInt(value);
+					}
+					out.writeInt(records[i + 1]);
+					out.writeInt(records[i + 2]);
+				}
+				else
+				{
+					out.writeByte(11);
+				}
+			}
+		}, !hasEnd);
+	}
+
+	/**
+	 * Get length of one stroke record inside the records array
+	 * @param type : type of the record
+	 * @return length of the record including the type
+	 */
+	private static int getStrokeRecordLength(int type)
+	{
+		if (type == StrokeFrameBuilder.START)
+		{
+			return 7;
+		}
+		else if (type == StrokeFrameBuilder.POINT)
+		{
+			return 3;
+		}
+		return 1;
+	}
+
+	/**
+	 * Create frame of broadcast message (code 12)
+	 * @param broadcastText : broadcast text
+	 * @return the frame
+	 */
+	public static BroadcastFrame broadcastText(String broadcastText)
+	{
+		return new BroadcastFrame((byte) 12, (out, version) -> UtilityProtocol.writeString(out, broadcastText, version));
+	}
+}
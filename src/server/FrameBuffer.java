@@ -0,0 +1,30 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reusable buffer to assemble one instruction before it's sent as one frame,
+ * the array is given directly without copying it
+ * @author Toshiba
+ *
+ */
+public class FrameBuffer extends ByteArrayOutputStream {
+
+	/**
+	 * Constructor for the buffer, 64 byte is enough for almost all instruction
+	 * except chat, the buffer will grow if needed
+	 */
+	public FrameBuffer()
+	{
+		super(64);
+	}
+
+	/**
+	 * Get the array of the buffer without copying it, valid until the next write or reset
+	 * @return array of the buffer, the frame is from index 0 until size()
+	 */
+	public byte[] array()
+	{
+		return this.buf;
+	}
+}
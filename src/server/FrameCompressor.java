@@ -0,0 +1,70 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import Utility.CompressionStats;
+import Utility.UtilityProtocol;
+
+/**
+ * Compressor for the frames sent to one player who use compression (see UtilityProtocol)<br>
+ * Every batch of frames (all frames written together) is compressed and ended with
+ * sync flush, so the player could decompress it without waiting the next batch
+ * @author Toshiba
+ *
+ */
+public class FrameCompressor {
+
+	private Deflater deflater = new Deflater(UtilityProtocol.COMPRESSION_LEVEL);
+
+	// compressed data of the last batch, reused for every batch
+	private byte output[] = new byte[4096];
+
+	// counter of the bytes of the game
+	private CompressionStats stats;
+
+	/**
+	 * Constructor for the compressor
+	 * @param stats : counter of the bytes of the game
+	 */
+	public FrameCompressor(CompressionStats stats)
+	{
+		this.stats = stats;
+	}
+
+	/**
+	 * Compress one batch of frames
+	 * @param data : array containing the frames
+	 * @param offset : index of the first byte
+	 * @param length : amount of byte
+	 * @return buffer (in read mode) containing the compressed data, valid until the next batch
+	 */
+	public ByteBuffer compress(byte data[], int offset, int length)
+	{
+		this.deflater.setInput(data, offset, length);
+
+		// if the output is full there's still data inside the deflater
+		int count = 0;
+		while (true)
+		{
+			count += this.deflater.deflate(this.output, count, this.output.length - count, Deflater.SYNC_FLUSH);
+			if (count < this.output.length)
+			{
+				break;
+			}
+			this.output = Arrays.copyOf(this.output, this.output.length * 2);
+		}
+
+		this.stats.addSent(length, count);
+		return ByteBuffer.wrap(this.output, 0, count);
+	}
+
+	/**
+	 * Free the memory used by the deflater, the compressor can't be used after this
+	 */
+	public void end()
+	{
+		this.deflater.end();
+	}
+}
@@ -0,0 +1,275 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffered output stream for the socket of one player that send whole frames<br>
+ * If coalesce window is 0 every frame is written to the socket when it ended,
+ * if not, the first frame start the window and all frames written in the window
+ * are sent together in one write when the window is over (or the buffer is full)<br>
+ * The stream is guarded by lock instead of synchronized, so the virtual thread
+ * writing to the socket doesn't hold its carrier thread while the socket is blocked
+ * @author Toshiba
+ *
+ */
+public class FrameOutputStream extends OutputStream {
+
+	// name of system property for the coalesce window (in milliseconds)
+	public static final String PROPERTY_COALESCE_WINDOW = "skribbl.server.coalesceMillis";
+
+	// coalesce window for all connection, 0 means no coalescing
+	private static final long coalesceWindow = Long.getLong(PROPERTY_COALESCE_WINDOW, 0);
+
+	// size of the buffer, more than this will be written without waiting the window
+	private static final int BUFFER_SIZE = 8192;
+
+	// scheduler shared by all connection to write the buffer after the window is over
+	private static ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(
+			runnable -> {
+				Thread thread = new Thread(runnable, "FrameOutputStream-flush");
+				thread.setDaemon(true);
+				return thread;
+			}
+	);
+
+	// stream of the socket
+	private OutputStream target;
+
+	// frames that not yet written to the socket
+	private byte buffer[] = new byte[BUFFER_SIZE];
+	private int count = 0;
+
+	// indicate the window already started and the buffer will be written
+	private boolean flushScheduled = false;
+
+	// error when writing the buffer from the scheduler, will be thrown at the next write
+	private IOException scheduledError = null;
+
+	// compressor of the data written to the socket, null if the player doesn't use compression
+	private FrameCompressor compressor = null;
+
+	// lock for the buffer and the socket, held by the writer and the scheduler
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Constructor for the stream
+	 * @param target : output stream of the socket
+	 */
+	public FrameOutputStream(OutputStream target)
+	{
+		this.target = target;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			this.checkError();
+
+			if (this.count == this.buffer.length)
+			{
+				this.writeBuffer();
+			}
+			this.buffer[this.count] = (byte) b;
+			this.count += 1;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void write(byte b[], int off, int len) throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			this.checkError();
+
+			if (len > this.buffer.length - this.count)
+			{
+				this.writeBuffer();
+			}
+			if (len >= this.buffer.length)
+			{
+				// too big for the buffer, just write it
+				this.writeTarget(b, off, len);
+				return;
+			}
+			System.arraycopy(b, off, this.buffer, this.count, len);
+			this.count += len;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Tell the stream one frame is ended, the frame is written now or
+	 * when the coalesce window is over
+	 * @throws IOException if the socket is closed
+	 */
+	public void endFrame() throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			this.checkError();
+
+			if (coalesceWindow <= 0)
+			{
+				this.writeBuffer();
+			}
+			else if (!this.flushScheduled && this.count > 0)
+			{
+				this.flushScheduled = true;
+				flushScheduler.schedule(this::scheduledFlush, coalesceWindow, TimeUnit.MILLISECONDS);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Compress all data written after this, the data written before is sent first
+	 * @param compressor : compressor for this player
+	 * @throws IOException if the socket is closed
+	 */
+	public void startCompression(FrameCompressor compressor) throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			this.checkError();
+			this.writeBuffer();
+			this.compressor = compressor;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Write the buffer when the coalesce window is over, called by the scheduler
+	 */
+	private void scheduledFlush()
+	{
+		this.lock.lock();
+		try
+		{
+			this.flushScheduled = false;
+			try
+			{
+				this.writeBuffer();
+			}
+			catch (IOException e)
+			{
+				this.scheduledError = e;
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Write all frame inside the buffer to the socket
+	 * @throws IOException if the socket is closed
+	 */
+	private void writeBuffer() throws IOException
+	{
+		if (this.count > 0)
+		{
+			int length = this.count;
+			this.count = 0;
+			this.writeTarget(this.buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Write data to the socket, compressed if the player use compression
+	 * @param b : the data
+	 * @param off : index of the first byte
+	 * @param len : amount of byte
+	 * @throws IOException if the socket is closed
+	 */
+	private void writeTarget(byte b[], int off, int len) throws IOException
+	{
+		if (this.compressor == null)
+		{
+			this.target.write(b, off, len);
+		}
+		else
+		{
+			ByteBuffer compressed = this.compressor.compress(b, off, len);
+			this.target.write(compressed.array(), 0, compressed.limit());
+		}
+	}
+
+	/**
+	 * Throw the error from the scheduler if there's any
+	 * @throws IOException error when writing the buffer from the scheduler
+	 */
+	private void checkError() throws IOException
+	{
+		if (this.scheduledError != null)
+		{
+			throw this.scheduledError;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			this.writeBuffer();
+			this.target.flush();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			try
+			{
+				this.writeBuffer();
+			}
+			finally
+			{
+				this.target.close();
+				if (this.compressor != null)
+				{
+					this.compressor.end();
+					this.compressor = null;
+				}
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package server;
+
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+
+import Utility.CompressionStats;
+
+/**
+ * The game server without the way the player connect to it, used by both the server
+ * embedded to the game (the player who created the lobby) and StandAloneServer<br>
+ * The engine own all room (see RoomRegistry), the room loops and the heartbeat of the
+ * connection, the player is accepted by the transport added to the engine
+ * (see GameTransport), one engine could have many transport at once
+ * @author Toshiba
+ *
+ */
+public class GameEngine {
+
+	// name of the server, used for the thread name
+	private String name;
+
+	// all room inside this server
+	private RoomRegistry roomRegistry;
+
+	// transport accepting the player, changed when synchronized this engine
+	private ArrayList<GameTransport> transports = new ArrayList<GameTransport>();
+
+	// true after the engine is shut down
+	private boolean shutdown = false;
+
+	/**
+	 * Constructor for the engine, the room loops and the heartbeat is started here
+	 * but no player could join before a transport is added
+	 * @param name : name of the server, used for the thread name
+	 * @param roomListener : listener told when room is created or removed, null if not needed
+	 */
+	public GameEngine(String name, PropertyChangeListener roomListener)
+	{
+		this.name = name;
+		this.roomRegistry = new RoomRegistry(
+				new RoomLoopGroup(name),
+				new HeartbeatSweeper(name),
+				roomListener
+		);
+	}
+
+	/**
+	 * Add the transport and start accepting the player from it
+	 * @param transport : the transport
+	 * @throws IllegalStateException if the engine is already shut down
+	 */
+	public void addTransport(GameTransport transport)
+	{
+		synchronized (this)
+		{
+			if (this.shutdown)
+			{
+				throw new IllegalStateException("Engine already shut down");
+			}
+			this.transports.add(transport);
+		}
+		transport.start(this);
+	}
+
+	/**
+	 * Get the name of the server
+	 * @return the name
+	 */
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 * Get the registry of all room inside this server
+	 * @return the registry
+	 */
+	public RoomRegistry getRoomRegistry()
+	{
+		return this.roomRegistry;
+	}
+
+	/**
+	 * Get the counter of the compressed bytes of all player in this server,
+	 * to see how much the compression save
+	 * @return the counter
+	 */
+	public CompressionStats getCompressionStats()
+	{
+		return this.roomRegistry.getCompressionStats();
+	}
+
+	/**
+	 * Stop the server, no player could join after this, the game of every room
+	 * is finished and the connection of all player is closed
+	 */
+	public void shutdown()
+	{
+		GameTransport closedTransports[];
+		synchronized (this)
+		{
+			if (this.shutdown)
+			{
+				return;
+			}
+			this.shutdown = true;
+			closedTransports = this.transports.toArray(new GameTransport[0]);
+			this.transports.clear();
+		}
+
+		for (GameTransport transport : closedTransports)
+		{
+			transport.close();
+		}
+		this.roomRegistry.finishAllRooms();
+
+		// room loop will stop after the game of all room finished
+		this.roomRegistry.getLoopGroup().shutdownGracefully();
+		this.roomRegistry.getHeartbeat().shutdown();
+	}
+}
@@ -0,0 +1,848 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import Utility.CompressionStats;
+
+/**
+ * One room of the game, every room have its own player list, turn queue, word and timer
+ * so one server could host many game together (see RoomRegistry)<br>
+ * The room doesn't have its own thread, the game logic is run by one of the RoomLoop shared
+ * by many room, every instruction of the player is put to the mailbox of the room (RoomMailbox)
+ * and applied one by one by that loop, so the game (like changing the turn) is never run by
+ * two thread together, room that is just waiting for player only cost its lists and is removed
+ * by the registry after the last player left
+ * @author Toshiba
+ *
+ */
+public class GameRoom {
+
+	// join code of this room, the registry that own this room and the loop
+	// that run the game of this room, every variable of the room is only used
+	// by that loop so nothing need to be synchronized
+	private final String code;
+	private final RoomRegistry registry;
+	private final RoomLoop loop;
+
+	// utility variable for the game view
+	private Random random; // randomizer to shuffle the player turn and the hint given to player	
+	private int round = 4; // indicate how many game round left
+	
+	// save all thread list of connection, used to send data from one player to all player
+	// clientThreads save the player thread, index of player thread comes from
+	// index of them inside clientThreads (also used as their index in game)
+	// 
+	// playerTurnList save player thread too but was shuffled, playerTurnList will copy
+	// clientThreads then shuffle it, then playerQueueTurn was queue to store the shuffled
+	// player thread list that will be used when play the game. In a simple way,
+	// playerTurnList was shuffled clientThreads used as template for player turn and
+	// playerQueueTurn was queue of playerTurnList
+	//
+	// clientThreads and playerTurnList is copy on write (see PlayerRegistry), sending data
+	// to all player read the current array without lock and the player count could be
+	// read by other thread, the list is only changed by the loop of this room
+	private PlayerRegistry clientThreads = new PlayerRegistry();
+	
+	private PlayerRegistry playerTurnList = new PlayerRegistry();
+	
+	private Deque<ServerClientConnection> playerQueueTurn = new ArrayDeque<ServerClientConnection>();
+	
+	// player thread who is currently in drawing mode
+	private ServerClientConnection currentlyDrawing;
+	
+	// indicate if the game not yet started and the player could join the room
+	// if this is true, the player will get permission to enter the lobby view, but
+	// if false, the player will get rejection code
+	private boolean couldJoin = true;
+	
+	// ID for the next player who join this room, the ID is never given twice
+	// so the instruction about the player who already left is never mistaken
+	private int nextPlayerId = 0;
+	
+	// utilities variable for the game view, thingName was object name drawn
+	// by player, startTime was used to save when was the turn started
+	// and TIME_PER_ROUND was time for every turn, hint was used to
+	// indicate if which character of object word will be shown to player as a hint,
+	// if the value was -1, that means the hint is not yet randomized (
+	// index 0 for the first hint and index 2 for the second hint)
+	private String thingName;
+	private long startTime;
+	private final long TIME_PER_ROUND = 40000;
+	private int hint[] = {-1, -1};
+	
+	// remaining time of the turn when the hint is given (in milliseconds) and the timer
+	// of the current turn (hint and end of the turn), the timer is run by the loop of this room
+	private static final long HINT_TIME[] = {20000, 10000};
+	private List<RoomLoop.Timer> turnTimers = new ArrayList<RoomLoop.Timer>();
+	
+	// the round trip time of every player is sent to all player every LATENCY_INTERVAL
+	// (in milliseconds) while there's player inside the room
+	private static final long LATENCY_INTERVAL = 2000;
+	private RoomLoop.Timer latencyTimer = null;
+	
+	// amount of player who is going to join this room, the join is waiting inside the loop,
+	// the room is not removed from the registry before it's 0 (changed when synchronized registry)
+	private int pendingJoins = 0;
+	
+	// mailbox of this room, every instruction of the player is put here and applied one by one
+	// by the loop of this room, the slot of the command is created once (see RoomMailbox)
+	private final RoomMailbox mailbox;
+	
+	// highest depth of the outbound queue and amount of frame dropped of the player who
+	// already left this room, the player still inside is counted by the getter
+	private volatile int maxOutboundDepth = 0;
+	private volatile long droppedFrames = 0;
+	
+	// counter of the compressed bytes of the player inside this room,
+	// also counted by the counter of the whole server
+	private final CompressionStats compressionStats;
+	
+	/**
+	 * Constructor for the room, called by the registry when the first player
+	 * join the room with this code
+	 * @param code : join code of the room
+	 * @param registry : registry that own this room
+	 * @param loop : loop that will run the game of this room
+	 */
+	public GameRoom(String code, RoomRegistry registry, RoomLoop loop)
+	{
+		this.code = code;
+		this.registry = registry;
+		this.loop = loop;
+		this.mailbox = new RoomMailbox(loop, this::apply);
+		this.compressionStats = new CompressionStats(registry.getCompressionStats());
+	}
+	
+	/**
+	 * Give the turn to currentlyDrawing, send reset drawing and the player who is drawing
+	 * to all player (encoded once for all player) and send the object word to every player
+	 * (not the same for every player), then start the timer of the turn and send the
+	 * end of the turn to all player
+	 */
+	private void nextTurn()
+	{
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot()) {
+			serverClientThread.setAlreadyAnswered(serverClientThread == this.currentlyDrawing);
+			serverClientThread.setCurrentlyDrawing(serverClientThread == this.currentlyDrawing);
+			serverClientThread.setHowManyAnswered(0);
+		}
+		
+		BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.RESET_DRAWING);
+		BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.turn(this.currentlyDrawing));
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot()) {
+			serverClientThread.sendWord(this.thingName);
+		}
+		
+		this.startTime = System.currentTimeMillis();
+		this.scheduleTurnTimers();
+		
+		// the end of the turn is sent once, the player count down by themselves
+		BroadcastFrame deadlineFrame = BroadcastFrame.turnDeadline(this.startTime + this.TIME_PER_ROUND, (int) this.TIME_PER_ROUND);
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot()) {
+			serverClientThread.sendVersion2Frame(deadlineFrame);
+		}
+	}
+	
+	/**
+	 * Put the command to the mailbox of this room, the command will be applied by the loop
+	 * of this room after all command sent before it, could be called from any thread,
+	 * the loop of this room and the event loop (NIO) must not wait
+	 * @param type : kind of the command
+	 * @param connection : connection of the player who send the command, null for FINISH
+	 * @param canWait : true if the sender could wait when the mailbox is full
+	 * @return false if the mailbox is full and the sender can't wait
+	 */
+	public boolean post(RoomCommand.Type type, ServerClientConnection connection, boolean canWait)
+	{
+		return this.mailbox.post(type, connection, null, null, null, canWait);
+	}
+	
+	/**
+	 * Put the command with data to the mailbox of this room
+	 * @param type : kind of the command
+	 * @param connection : connection of the player who send the command
+	 * @param text : name or chat of the player (NAME, LOBBY_CHAT or GUESS), null if not used
+	 * @param data : drawing point (IMAGE_TEXTURE), null if not used
+	 * @param records : copy of the stroke records (STROKE), null if not used
+	 * @param canWait : true if the sender could wait when the mailbox is full
+	 * @return false if the mailbox is full and the sender can't wait
+	 */
+	public boolean post(RoomCommand.Type type, ServerClientConnection connection, String text, int data[], byte records[], boolean canWait)
+	{
+		return this.mailbox.post(type, connection, text, data, records, canWait);
+	}
+	
+	/**
+	 * Remove the player without the mailbox, used when the mailbox is full and the player
+	 * who left can't wait, the command of the player still inside the mailbox is ignored
+	 * after the player is removed, could be called from any thread
+	 * @param connection : connection of the player
+	 */
+	void removeLater(ServerClientConnection connection)
+	{
+		this.loop.execute(() -> {
+			if (connection.isInRoom())
+			{
+				this.removePlayer(connection);
+			}
+		});
+	}
+	
+	/**
+	 * Forget the player who can't join because the mailbox is full (the JOIN
+	 * command is not put), the room is removed if there's no other player
+	 */
+	void cancelJoin()
+	{
+		this.loop.execute(() -> {
+			synchronized (this.registry)
+			{
+				this.pendingJoins -= 1;
+			}
+			this.registry.removeIfIdle(this);
+		});
+	}
+	
+	/**
+	 * Apply one command to this room, the command from player who is not inside
+	 * this room (denied or already left) is ignored except JOIN
+	 * @param command : the command
+	 */
+	private void apply(RoomCommand command)
+	{
+		RoomCommand.Type type = command.getType();
+		ServerClientConnection connection = command.getConnection();
+		
+		if (type == RoomCommand.Type.JOIN)
+		{
+			this.addPlayer(connection);
+		}
+		else if (type == RoomCommand.Type.FINISH)
+		{
+			this.finishGame();
+			this.registry.removeIfIdle(this);
+		}
+		else if (!connection.isInRoom())
+		{
+			return;
+		}
+		else if (type == RoomCommand.Type.NAME)
+		{
+			this.setPlayerName(connection, command.getText());
+		}
+		else if (type == RoomCommand.Type.LOBBY_CHAT)
+		{
+			// send the chat to all player
+			BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.chat(connection, command.getText()));
+		}
+		else if (type == RoomCommand.Type.START)
+		{
+			this.startGame();
+		}
+		else if (type == RoomCommand.Type.IMAGE_TEXTURE)
+		{
+			connection.drawImageTexture(command.getData());
+		}
+		else if (type == RoomCommand.Type.STROKE)
+		{
+			connection.drawStroke(command.getRecords());
+		}
+		else if (type == RoomCommand.Type.STOP_DRAWING)
+		{
+			this.stopDrawing();
+		}
+		else if (type == RoomCommand.Type.GUESS)
+		{
+			this.guess(connection, command.getText());
+		}
+		else if (type == RoomCommand.Type.TIME)
+		{
+			this.checkTime(connection);
+		}
+		else if (type == RoomCommand.Type.LEAVE)
+		{
+			this.removePlayer(connection);
+		}
+	}
+	
+	/**
+	 * Give the name to the player and send it to all player, then send the name
+	 * of other player to the new player
+	 * @param connection : connection of the player
+	 * @param playerName : name of the player
+	 */
+	private void setPlayerName(ServerClientConnection connection, String playerName)
+	{
+		connection.setPlayerName(playerName);
+		
+		// send new player data to all other player using their connection
+		// to send the data, the data is encoded once for all player
+		BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.newPlayer(connection, playerName));
+		
+		// name of other player (player who already in the lobby)
+		String otherPlayerName = null;
+		
+		try
+		{
+			for (ServerClientConnection serverClientThread : this.clientThreads.snapshot())
+			{
+				// getting name of other player (if not this to prevent sending
+				// two same player to the new player), because in the client side
+				// when they enter the game, their didn't create their player
+				// but must wait for server to send their own name back to
+				// create their player, confusing?
+				// in simple way, all the name of player showed in the game
+				// was obtained from the server, including their own player name
+				if (serverClientThread != connection)
+				{
+					otherPlayerName = serverClientThread.getPlayerName();
+					
+					// send non null other player name to the new player
+					// this is safe because if the player who have null name
+					// load their name from their client, they will send it too
+					// and the new player will get it
+					if (otherPlayerName != null)
+					{
+						connection.sendNewPlayerToClient(
+								serverClientThread,
+								otherPlayerName
+						);
+					}
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// the socket of the new player is closed, their connection will remove them
+		}
+	}
+	
+	/**
+	 * Start the game if there's more than one player inside the lobby, send start instruction
+	 * to all player, shuffle player's turn and give the first turn
+	 */
+	private void startGame()
+	{
+		// the game must be started by the room because the room must know
+		// if the game is started and deny the player who try to join
+		if (this.clientThreads.size() > 1)
+		{
+			// the game will not started if there is just 1 player inside the lobby
+			// at least 2 player must join the server (including lobby host)
+			
+			this.couldJoin = false;
+			this.random = new Random(System.currentTimeMillis());
+			
+			// send start game instruction to all player
+			ServerClientConnection turnList[] = this.clientThreads.snapshot().clone();
+			BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.START_INSTRUCTION);
+			
+			
+			// shuffle the player turn (the copy of the player list)
+			ServerClientConnection temp;
+			int firstIndex;
+			int secondIndex;
+			for (int i = 0; i < turnList.length * 3; i++)
+			{
+				firstIndex = this.random.nextInt(turnList.length);
+				secondIndex = this.random.nextInt(turnList.length);
+				temp = turnList[firstIndex];
+				turnList[firstIndex] = turnList[secondIndex];
+				turnList[secondIndex] = temp;
+			}
+			this.playerTurnList.set(turnList);
+			
+			for (ServerClientConnection serverClientThread : turnList) {
+				this.playerQueueTurn.add(serverClientThread);
+			}
+			
+			// random the object name, reset the hint
+			this.thingName = ServerUtilityData.getRandomThingName();
+			for (int i = 0; i < this.hint.length; i++)
+			{
+				this.hint[i] = -1;
+			}
+			
+			// send instruction to reset to all player and send the 
+			// object name to player and set who get drawing for the first turn
+			this.currentlyDrawing = this.playerQueueTurn.poll();
+			this.nextTurn();
+			
+			// round used to indicate how many time the playerQueueTurn
+			// could be refilled before the game ended
+			// round = 3 means the game have 4 rounds for every player
+			this.round = 3;
+		}
+	}
+	
+	/**
+	 * Send the remaining time of the turn to the player (just for protocol version 1),
+	 * nothing happen if the game is not yet started (the hint and the next turn is
+	 * given by the timer of the turn)
+	 * @param connection : connection of the player who ask the remaining time
+	 */
+	private void checkTime(ServerClientConnection connection)
+	{
+		if (this.couldJoin)
+		{
+			// the time is only sent if the game is already started
+			// if not, no need to update the time
+			return;
+		}
+		
+		// remaining time is in seconds
+		int remainingTime = (int)(this.TIME_PER_ROUND - (System.currentTimeMillis() - this.startTime)) / 1000;
+		
+		// send the time to the player who is requesting the time remaining
+		connection.sendTimeCondition(remainingTime);
+	}
+	
+	/**
+	 * Schedule the timer of the turn that just started, the first hint when 20 seconds left,
+	 * the second hint when 10 seconds left and the end of the turn, every timer is run
+	 * once by the loop of this room
+	 */
+	private void scheduleTurnTimers()
+	{
+		this.cancelTurnTimers();
+		
+		this.turnTimers.add(this.loop.schedule(this.TIME_PER_ROUND - HINT_TIME[0], () -> this.revealHint(0)));
+		if (this.thingName.length() > 5)
+		{
+			// the second hint is just given if the object name length is more than 5 characters
+			this.turnTimers.add(this.loop.schedule(this.TIME_PER_ROUND - HINT_TIME[1], () -> this.revealHint(1)));
+		}
+		this.turnTimers.add(this.loop.schedule(this.TIME_PER_ROUND, () -> this.endTurn()));
+	}
+	
+	/**
+	 * Cancel all timer of the current turn (the turn is changed or the game is finished)
+	 */
+	private void cancelTurnTimers()
+	{
+		for (RoomLoop.Timer timer : this.turnTimers)
+		{
+			timer.cancel();
+		}
+		this.turnTimers.clear();
+	}
+	
+	/**
+	 * Random the hint and send it to all player, run by the timer of the turn
+	 * @param index : 0 for the first hint, 1 for the second hint
+	 */
+	private void revealHint(int index)
+	{
+		if (this.hint[index] == -1)
+		{
+			// random the hint if not yet generated
+			// because this is just a simple random,
+			// the player could get same hint as the first hint
+			// thus making the second hint useless and the player
+			// just getting one hint
+			this.hint[index] = this.random.nextInt(this.thingName.length());
+		}
+		
+		// send the hint to all player (except who already answered and who is drawing)
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot()) {
+			serverClientThread.sendHint(this.hint[index], index);
+		}
+	}
+	
+	/**
+	 * The player drawing time is up, the turn will go to the next player or the game
+	 * is finished if all round is done, run by the timer of the turn
+	 */
+	private void endTurn()
+	{
+		this.turnTimers.clear();
+		
+		if (this.round >= 0)
+		{
+			// the turn will go to the next player if the round value
+			// is more than or same with 0, if not that means the game
+			// is finished
+			
+			this.thingName = ServerUtilityData.getRandomThingName();
+			if (this.playerQueueTurn.size() == 0)
+			{
+				this.playerQueueTurn.addAll(Arrays.asList(this.playerTurnList.snapshot()));
+				this.round -= 1;
+			}
+			for (int i = 0; i < this.hint.length; i++)
+			{
+				this.hint[i] = -1;
+			}
+			
+			this.currentlyDrawing = this.playerQueueTurn.poll();
+			this.nextTurn();
+		}
+		else
+		{
+			// the round reach < 0, the game is finished, the player
+			// will get game finished instruction to tell them the game 
+			// is already finished
+			this.finishGame();
+			this.registry.removeIfIdle(this);
+		}
+	}
+	
+	/**
+	 * Check the chat sent from game view, the player who answered right get the score
+	 * (and the one who is drawing), other chat is sent to all player
+	 * @param connection : connection of the player who send the chat
+	 * @param chat : chat sent by the player
+	 */
+	private void guess(ServerClientConnection connection, String chat)
+	{
+		// this is the difference with lobby chat, there's two different possibilities
+		// if the chat is same with the object word, this mean
+		// player answered right, so this chat will be consumed and
+		// not send to all player
+		if (this.thingName != null && this.thingName.compareToIgnoreCase(chat) == 0)
+		{
+			// player answered the right answer
+			
+			if (connection.isAlreadyAnswered() == false && connection.isCurrentlyDrawing() == false)
+			{
+				// in this case, the player will get score
+				// this if condition is important, the player must not yet answered
+				// because if they already answered, they should not get more score
+				// and the player who is drawing can't chat anything
+				
+				// sending additional score to the player because answered the
+				// right answer and sending score to player who is drawing too
+				// player will always get score every time someone guess their
+				// image right
+				//
+				// score calculation f(x) = (amount of player - how many answered right) * 4 + 16
+				// and 8 for the one who draw the image, the frames are same for all player
+				BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.broadcastText(connection.getPlayerName() + " guess the right word"));
+				BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.score(connection, (this.clientThreads.size() - connection.getHowManyAnswered()) * 4 + 16));
+				
+				for (ServerClientConnection serverClientThread : this.clientThreads.snapshot())
+				{
+					serverClientThread.addWhoAnsweredOne();
+					
+					if (serverClientThread.isCurrentlyDrawing())
+					{
+						BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.score(serverClientThread, 8));
+					}
+				}
+				
+				// set the player to already answered the question
+				// to prevent them answered again and send the
+				// whole object word to player
+				connection.setAlreadyAnswered(true);
+				connection.sendWord(this.thingName);
+			}
+		}
+		else
+		{
+			// the chat is just going to sent to all player but if they
+			// are the one who is drawing, they can't send any chat
+			if (connection.isCurrentlyDrawing() == false)
+			{
+				// the player is not the one who is drawing, so
+				// the chat will be sent to all player
+				BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.chat(connection, chat));
+			}
+		}
+	}
+	
+	/**
+	 * Send stop drawing instruction to all player, this is not limited to just the player who
+	 * are taking the turns drawing, but every player could send this instruction
+	 * if they release their left mouse inside canvas, called by the loop of this room
+	 */
+	void stopDrawing()
+	{
+		// sending stop drawing instruction to all player
+		// including the one who draw the image
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot())
+		{
+			serverClientThread.resetStroke();
+		}
+		BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.STOP_DRAWING);
+	}
+	
+	/**
+	 * Remove the player who left the room and tell all other player
+	 * @param connection : connection of the player
+	 */
+	private void removePlayer(ServerClientConnection connection)
+	{
+		// send the removal player instruction to all player
+		// except for the player who left because the player didn't need
+		// to remove himself, but just remove all other player from list
+		// and going to main menu (instructed in client code)
+		BroadcastFrame removalFrame = BroadcastFrame.removalPlayer(connection);
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot()) {
+			if (serverClientThread != connection)
+			{
+				try
+				{
+					serverClientThread.sendFrame(removalFrame);
+				}
+				catch(IOException ignored) {}
+				// it is likely to happen if two player exit by force close
+				// in the same time will make their connection still not removed
+				// but their socket is closed and if their socket is closed,
+				// just ignore it because their connection doesn't need to remove
+				// this connection player, so this is just send removal player
+				// instruction to all player still in lobby
+			}
+		}
+		
+		// removing the player from player list, player turn queue, and shuffle queue template
+		this.removePlayerFromList(connection);
+		
+		// updating all player connection index, the player with protocol version 1 remove
+		// the player by the index and shift the other player like this too
+		// (the player ID used by version 2 is never changed)
+		for (int i = 0; i < this.clientThreads.size(); i++)
+		{
+			this.clientThreads.get(i).setIndex(i);
+		}
+	}
+	
+	/**
+	 * Remove player thread from all list of player thread. Removed from 
+	 * clientThread, playerTurnList, and playerQueueTurn
+	 * @param playerThread : player thread to be removed
+	 */
+	private void removePlayerFromList(ServerClientConnection playerThread)
+	{
+		// removing the player thread form all list of player thread
+		this.clientThreads.remove(playerThread);
+		this.playerTurnList.remove(playerThread);
+		this.playerQueueTurn.remove(playerThread);
+		this.countQueueMetrics(playerThread);
+		playerThread.leaveRoom();
+		this.loop.addPlayers(-1);
+		
+		if (this.clientThreads.size() == 1 && this.couldJoin == false)
+		{
+			// stop the game if the there's just one player left inside the game
+			// couldJoin to indicate if the player inside game view or lobby view
+			// and this one is for game view
+			this.finishGame();
+		}
+		this.registry.removeIfIdle(this);
+	}
+	
+	/**
+	 * Keep the outbound queue metrics of the player who is leaving this room
+	 * @param connection : connection of the player
+	 */
+	private void countQueueMetrics(ServerClientConnection connection)
+	{
+		this.maxOutboundDepth = Math.max(this.maxOutboundDepth, connection.getOutboundQueueMaxDepth());
+		this.droppedFrames += connection.getDroppedFrames();
+	}
+	
+	/**
+	 * Get the join code of this room
+	 * @return join code, empty string for the default room
+	 */
+	public String getCode()
+	{
+		return this.code;
+	}
+	
+	/**
+	 * Get the loop running the game of this room
+	 * @return the loop
+	 */
+	public RoomLoop getLoop()
+	{
+		return this.loop;
+	}
+	
+	/**
+	 * Get amount of player inside this room, could be called from any thread
+	 * @return amount of player
+	 */
+	public int getPlayerCount()
+	{
+		return this.clientThreads.size();
+	}
+	
+	/**
+	 * Get amount of command waiting inside the mailbox of this room
+	 * @return amount of command
+	 */
+	public int getMailboxDepth()
+	{
+		return this.mailbox.getDepth();
+	}
+	
+	/**
+	 * Get the highest amount of command ever waiting inside the mailbox of this room
+	 * @return amount of command
+	 */
+	public int getMaxMailboxDepth()
+	{
+		return this.mailbox.getMaxDepth();
+	}
+	
+	/**
+	 * Get the counter of the compressed bytes of the player inside this room
+	 * @return the counter
+	 */
+	public CompressionStats getCompressionStats()
+	{
+		return this.compressionStats;
+	}
+	
+	/**
+	 * Get the highest amount of frame ever waiting to be written to one player of this room
+	 * (including the player who already left), could be called from any thread
+	 * @return maximum depth of the outbound queue
+	 */
+	public int getMaxOutboundDepth()
+	{
+		int maxDepth = this.maxOutboundDepth;
+		for (ServerClientConnection connection : this.clientThreads.snapshot())
+		{
+			maxDepth = Math.max(maxDepth, connection.getOutboundQueueMaxDepth());
+		}
+		return maxDepth;
+	}
+	
+	/**
+	 * Get amount of frame dropped because the outbound queue of the player of this room
+	 * is full (including the player who already left), could be called from any thread
+	 * @return amount of frame dropped
+	 */
+	public long getDroppedFrames()
+	{
+		long dropped = this.droppedFrames;
+		for (ServerClientConnection connection : this.clientThreads.snapshot())
+		{
+			dropped += connection.getDroppedFrames();
+		}
+		return dropped;
+	}
+	
+	/**
+	 * Check if there's no player inside this room and no player waiting to join,
+	 * must be called by the loop of this room and when synchronized the registry
+	 * @return true if the room could be removed
+	 */
+	boolean isIdle()
+	{
+		return this.clientThreads.isEmpty() && this.pendingJoins == 0;
+	}
+	
+	/**
+	 * Count player who is going to join this room (the join is waiting inside the loop),
+	 * the room is not removed before the player joined, called when synchronized the registry
+	 */
+	void addPendingJoin()
+	{
+		this.pendingJoins += 1;
+	}
+	
+	/**
+	 * Add the player to this room if the game is not yet started, the player
+	 * will use the player list of this room, applied from JOIN command,
+	 * the player that can't join will get rejection code
+	 * @param connection : connection of the player
+	 */
+	private void addPlayer(ServerClientConnection connection)
+	{
+		synchronized (this.registry)
+		{
+			this.pendingJoins -= 1;
+		}
+		
+		if (!this.couldJoin)
+		{
+			connection.deny();
+			this.registry.removeIfIdle(this);
+			return;
+		}
+		
+		// adding the connection on clientThreads and set index of the
+		// connection in clientThreads
+		connection.setIndex(this.clientThreads.size());
+		connection.setPlayerId(this.nextPlayerId++);
+		connection.enterRoom(this.clientThreads, this.compressionStats);
+		this.clientThreads.add(connection);
+		this.loop.addPlayers(1);
+		
+		if (this.latencyTimer == null)
+		{
+			this.latencyTimer = this.loop.schedule(LATENCY_INTERVAL, this::sendLatency);
+		}
+	}
+	
+	/**
+	 * Send the round trip time of every player to all player (protocol version 2),
+	 * then run again after LATENCY_INTERVAL until there's no player left, run by the timer
+	 */
+	private void sendLatency()
+	{
+		if (this.clientThreads.isEmpty())
+		{
+			this.latencyTimer = null;
+			return;
+		}
+		this.latencyTimer = this.loop.schedule(LATENCY_INTERVAL, this::sendLatency);
+		
+		// player whose round trip time is not yet known is not sent
+		int playerIds[] = new int[this.clientThreads.size()];
+		int latencies[] = new int[this.clientThreads.size()];
+		int count = 0;
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot())
+		{
+			int rtt = serverClientThread.getRttEstimator().getSmoothedRtt();
+			if (rtt >= 0)
+			{
+				playerIds[count] = serverClientThread.getPlayerId();
+				latencies[count] = rtt;
+				count += 1;
+			}
+		}
+		if (count > 0)
+		{
+			BroadcastFrame latencyFrame = BroadcastFrame.playerLatency(playerIds, latencies, count);
+			for (ServerClientConnection serverClientThread : this.clientThreads.snapshot())
+			{
+				serverClientThread.sendVersion2Frame(latencyFrame);
+			}
+		}
+	}
+	
+	/**
+	 * stop the game, send finished instruction to all player and reset the room,
+	 * the room will be removed from the registry because there's no player left,
+	 * called by the loop of this room
+	 */
+	private void finishGame()
+	{
+		BroadcastFrame.broadcast(this.clientThreads, BroadcastFrame.GAME_FINISHED);
+		
+		for (ServerClientConnection serverClientThread : this.clientThreads.snapshot())
+		{
+			this.countQueueMetrics(serverClientThread);
+			serverClientThread.leaveRoom();
+		}
+		this.loop.addPlayers(-this.clientThreads.size());
+		this.clientThreads.clear();
+		this.playerTurnList.clear();
+		this.playerQueueTurn.clear();
+		
+		this.cancelTurnTimers();
+		this.currentlyDrawing = null;
+		this.thingName = null;
+		this.couldJoin = true;
+	}
+}
@@ -0,0 +1,25 @@
+package server;
+
+/**
+ * Way for the player to reach the GameEngine, the transport accept the player and create
+ * their connection (subclass of ServerClientConnection), the game itself doesn't know which
+ * transport is used by the player<br>
+ * TcpTransport accept the player from the network and LoopbackTransport connect the
+ * player inside the same program (the player who created the lobby)
+ * @author Toshiba
+ *
+ */
+public interface GameTransport {
+
+	/**
+	 * Start accepting the player, called once by the engine when the transport is added
+	 * @param engine : the engine used by the connection of the player
+	 */
+	void start(GameEngine engine);
+
+	/**
+	 * Stop accepting the player, called once by the engine when it's shut down,
+	 * the connection already made is closed by the game (finished instruction)
+	 */
+	void close();
+}
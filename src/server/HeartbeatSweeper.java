@@ -0,0 +1,236 @@
+package server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One thread for the whole server that check all connection is still alive<br>
+ * Every sweep, the player who didn't send anything for longer than the idle timeout
+ * is disconnected, any instruction from the player count as alive (not only the answer
+ * of the test byte). The test byte is only sent if the connection was quiet in one
+ * direction for the ping interval, so the player who is drawing or chatting doesn't get
+ * the test byte at all<br>
+ * The idle timeout is only used before the round trip time of the player is known, after
+ * that the timeout is counted from their round trip time and jitter (see RttEstimator),
+ * the player with good connection is disconnected faster and the player with slow
+ * connection get longer time (up to the maximum idle timeout)
+ * @author Toshiba
+ *
+ */
+public class HeartbeatSweeper implements Runnable {
+
+	// name of system property to change how long the connection could be quiet
+	// before the test byte is sent and before the player is disconnected (in milliseconds)
+	public static final String PROPERTY_PING_INTERVAL = "skribbl.server.pingInterval";
+	public static final String PROPERTY_IDLE_TIMEOUT = "skribbl.server.idleTimeout";
+
+	// name of system property to change the longest timeout for the player with slow
+	// connection and how often the test byte is sent to measure the round trip time
+	// even if the connection is not quiet (in milliseconds)
+	public static final String PROPERTY_MAXIMUM_IDLE_TIMEOUT = "skribbl.server.maxIdleTimeout";
+	public static final String PROPERTY_RTT_INTERVAL = "skribbl.server.rttInterval";
+
+	// how many test byte could be missed before the player is disconnected
+	// (the timeout is this many ping interval + 4 times the retransmission timeout)
+	private static final int MISSED_PINGS = 3;
+
+	// the test byte is counted as late (the connection is degraded) if it's not
+	// answered after twice the retransmission timeout, but not less than this
+	private static final long MINIMUM_LATE_TIME = 1000;
+
+	// time between every sweep (in milliseconds), the remaining time of the turn
+	// for the player with protocol version 1 is also sent every sweep
+	private static final long SWEEP_INTERVAL = 500;
+
+	private final long pingInterval;
+	private final long idleTimeout;
+	private final long maximumIdleTimeout;
+	private final long rttInterval;
+
+	// all connection that is not yet closed
+	private Set<ServerClientConnection> connections = ConcurrentHashMap.newKeySet();
+
+	// thread running the sweep
+	private ScheduledExecutorService scheduler;
+
+	// counter of the sweep result, only written by the sweeper thread
+	private volatile long pingsSent = 0;
+	private volatile long pingsSkipped = 0;
+	private volatile long timeouts = 0;
+
+	// amount of connection with late answer found by the last sweep
+	private volatile int degraded = 0;
+
+	/**
+	 * Constructor for the sweeper, the time is taken from system property
+	 * skribbl.server.pingInterval (default 2 seconds), skribbl.server.idleTimeout (default 10 seconds),
+	 * skribbl.server.maxIdleTimeout (default 30 seconds) and skribbl.server.rttInterval (default 5 seconds)
+	 * @param name : name of the server, used for the thread name
+	 */
+	public HeartbeatSweeper(String name)
+	{
+		this(
+				name,
+				Long.getLong(PROPERTY_PING_INTERVAL, 2000),
+				Long.getLong(PROPERTY_IDLE_TIMEOUT, 10000),
+				Long.getLong(PROPERTY_MAXIMUM_IDLE_TIMEOUT, 30000),
+				Long.getLong(PROPERTY_RTT_INTERVAL, 5000)
+		);
+	}
+
+	/**
+	 * Constructor for the sweeper
+	 * @param name : name of the server, used for the thread name
+	 * @param pingInterval : how long the connection could be quiet before the test byte is sent (in milliseconds)
+	 * @param idleTimeout : how long the player could send nothing before disconnected,
+	 * used before the round trip time is known (in milliseconds)
+	 * @param maximumIdleTimeout : longest timeout for the player with slow connection (in milliseconds)
+	 * @param rttInterval : longest time between the test byte used to measure the round trip time (in milliseconds)
+	 */
+	public HeartbeatSweeper(String name, long pingInterval, long idleTimeout, long maximumIdleTimeout, long rttInterval)
+	{
+		this.pingInterval = pingInterval;
+		this.idleTimeout = idleTimeout;
+		this.maximumIdleTimeout = Math.max(idleTimeout, maximumIdleTimeout);
+		this.rttInterval = rttInterval;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name + "-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Start checking the connection, the connection is forgotten after it's closed
+	 * @param connection : connection of the player
+	 */
+	public void register(ServerClientConnection connection)
+	{
+		this.connections.add(connection);
+	}
+
+	@Override
+	public void run()
+	{
+		long now = System.currentTimeMillis();
+		int lateConnections = 0;
+		for (ServerClientConnection connection : this.connections)
+		{
+			try
+			{
+				this.sweep(connection, now);
+				if (this.isDegraded(connection, now))
+				{
+					lateConnections += 1;
+				}
+			}
+			catch (RuntimeException e)
+			{
+				// one broken connection must not stop checking the other connection
+				e.printStackTrace();
+			}
+		}
+		this.degraded = lateConnections;
+	}
+
+	/**
+	 * Check one connection, disconnect the player if they are quiet too long
+	 * and send the test byte if needed
+	 * @param connection : connection of the player
+	 * @param now : current time
+	 */
+	private void sweep(ServerClientConnection connection, long now)
+	{
+		if (connection.isClosed())
+		{
+			this.connections.remove(connection);
+			return;
+		}
+
+		long quietReceiving = now - connection.getLastReceived();
+		if (quietReceiving >= this.getIdleTimeout(connection))
+		{
+			// timeout condition, the player will be removed by the reader of the connection
+			this.timeouts += 1;
+			connection.forceCloseConnection();
+			return;
+		}
+		if (!connection.isReadyForTestByte())
+		{
+			return;
+		}
+
+		// the player must send something so they are known still alive, and must receive
+		// something so they know the server still alive, if both happened recently
+		// there's no need to send the test byte, except to measure the round trip time
+		if (quietReceiving >= this.pingInterval || now - connection.getLastSent() >= this.pingInterval
+				|| now - connection.getRttEstimator().getLastPingTime() >= this.rttInterval)
+		{
+			this.pingsSent += 1;
+			connection.sendHeartbeat();
+		}
+		else
+		{
+			this.pingsSkipped += 1;
+		}
+		connection.requestTimeCondition();
+	}
+
+	/**
+	 * Get how long the player could send nothing before disconnected, counted from
+	 * their round trip time if it's known
+	 * @param connection : connection of the player
+	 * @return timeout in milliseconds
+	 */
+	public long getIdleTimeout(ServerClientConnection connection)
+	{
+		long retransmissionTimeout = connection.getRttEstimator().getRetransmissionTimeout();
+		if (retransmissionTimeout < 0)
+		{
+			return this.idleTimeout;
+		}
+		return Math.min(this.maximumIdleTimeout, MISSED_PINGS * this.pingInterval + 4 * retransmissionTimeout);
+	}
+
+	/**
+	 * Check if the answer of the test byte is late, the player is likely to be disconnected soon
+	 * @param connection : connection of the player
+	 * @param now : current time
+	 * @return true if the connection is degraded
+	 */
+	public boolean isDegraded(ServerClientConnection connection, long now)
+	{
+		RttEstimator rtt = connection.getRttEstimator();
+		return rtt.getUnansweredTime(now) > Math.max(MINIMUM_LATE_TIME, 2 * rtt.getRetransmissionTimeout());
+	}
+
+	/**
+	 * Get amount of connection checked by this sweeper
+	 * @return amount of connection
+	 */
+	public int getConnectionCount()
+	{
+		return this.connections.size();
+	}
+
+	/**
+	 * Stop checking all connection
+	 */
+	public void shutdown()
+	{
+		this.scheduler.shutdown();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"Heartbeat: %d connections (%d degraded), %d pings sent, %d pings skipped, %d timeouts",
+				this.getConnectionCount(), this.degraded, this.pingsSent, this.pingsSkipped, this.timeouts
+		);
+	}
+}
@@ -0,0 +1,273 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+
+import Utility.ClientConnection;
+
+/**
+ * Connection of the player who is inside the same program as the server (the player
+ * who created the lobby), no socket and no network is used<br>
+ * The bytes sent by the player is put to LoopbackPipe and read by the reader thread of
+ * this connection like the socket, the frames sent to the player is not written by any
+ * writer but taken from the outbound queue directly by the client (see getClientSide),
+ * so the player get the frame as soon as it's queued. The connection is never compressed
+ * @author Toshiba
+ *
+ */
+public class LoopbackConnection extends ServerClientThread {
+
+	// bytes sent by the player to the server
+	private LoopbackPipe pipe;
+
+	// the side used by the client
+	private ClientSide clientSide = new ClientSide();
+
+	/**
+	 * Constructor for the connection, the reader thread is started by start()
+	 * @param roomRegistry : registry of the room inside the server
+	 * @throws IOException if can't send the handshake byte
+	 */
+	public LoopbackConnection(RoomRegistry roomRegistry) throws IOException
+	{
+		this(new LoopbackPipe(), roomRegistry);
+	}
+
+	/**
+	 * Constructor for the connection with the pipe of the player
+	 * @param pipe : bytes sent by the player to the server
+	 * @param roomRegistry : registry of the room inside the server
+	 * @throws IOException if can't send the handshake byte
+	 */
+	private LoopbackConnection(LoopbackPipe pipe, RoomRegistry roomRegistry) throws IOException
+	{
+		super(new DataInputStream(pipe.getInputStream()), roomRegistry);
+		this.pipe = pipe;
+
+		// the heartbeat could check this connection after the handshake, so the pipe must be ready
+		this.handshake();
+	}
+
+	/**
+	 * Get the connection used by the client (GameLobbyView) to talk with this connection
+	 * @return the client side of this connection
+	 */
+	public ClientConnection getClientSide()
+	{
+		return this.clientSide;
+	}
+
+	@Override
+	protected Thread startThread(Runnable runnable)
+	{
+		Thread thread = new Thread(runnable, "loopback-player");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Nothing to wait, the read after this will wait until the data arrived
+	 * or return end of stream after the pipe is closed
+	 * @param n : amount of byte needed
+	 */
+	@Override
+	public void waitInput(int n)
+	{
+
+	}
+
+	@Override
+	protected boolean isCompressionSupported()
+	{
+		// nothing to save, the bytes never leave the program
+		return false;
+	}
+
+	@Override
+	protected void startInputCompression()
+	{
+
+	}
+
+	@Override
+	protected void closeConnection()
+	{
+		// the client still could take the frames inside the queue, the reader
+		// will get end of stream after the data sent by the player is read
+		this.outboundQueue.close();
+		this.pipe.close();
+	}
+
+	@Override
+	public boolean isClosed()
+	{
+		return this.pipe.isClosed();
+	}
+
+	@Override
+	public void forceCloseConnection()
+	{
+		this.outboundQueue.clear();
+		this.pipe.clear();
+	}
+
+	/**
+	 * The side of the connection used by the client, reading the frame
+	 * from the outbound queue and writing to the pipe
+	 */
+	private class ClientSide implements ClientConnection {
+
+		// the frame currently read by the client, from position until the end not yet read
+		private byte frame[] = new byte[0];
+		private int position = 0;
+
+		// how long the read could wait before throwing exception (0 to wait forever)
+		private volatile int readTimeout = 0;
+
+		private InputStream inputStream = new InputStream() {
+
+			@Override
+			public int read() throws IOException
+			{
+				if (!ClientSide.this.nextFrame(true))
+				{
+					return -1;
+				}
+				return ClientSide.this.frame[ClientSide.this.position++] & 0xFF;
+			}
+
+			@Override
+			public int read(byte data[], int offset, int length) throws IOException
+			{
+				if (length == 0)
+				{
+					return 0;
+				}
+				if (!ClientSide.this.nextFrame(true))
+				{
+					return -1;
+				}
+				int size = Math.min(length, ClientSide.this.frame.length - ClientSide.this.position);
+				System.arraycopy(ClientSide.this.frame, ClientSide.this.position, data, offset, size);
+				ClientSide.this.position += size;
+				return size;
+			}
+
+			@Override
+			public int available() throws IOException
+			{
+				if (!ClientSide.this.nextFrame(false))
+				{
+					// not like the socket, the client know the server closed the connection now
+					throw new IOException("Connection closed");
+				}
+				return ClientSide.this.frame.length - ClientSide.this.position;
+			}
+
+			@Override
+			public void close()
+			{
+				ClientSide.this.close();
+			}
+		};
+
+		/**
+		 * Take the next frame from the outbound queue if the current frame is already read
+		 * @param block : true to wait until there's frame (not longer than the read timeout)
+		 * @return false if the queue is closed and empty
+		 * @throws IOException if there's no frame after the read timeout or interrupted
+		 */
+		private boolean nextFrame(boolean block) throws IOException
+		{
+			try
+			{
+				while (this.position == this.frame.length)
+				{
+					byte next[];
+					if (block && this.readTimeout == 0)
+					{
+						next = LoopbackConnection.this.outboundQueue.take();
+					}
+					else
+					{
+						next = LoopbackConnection.this.outboundQueue.poll(block ? this.readTimeout : 0);
+					}
+
+					if (next != null)
+					{
+						this.frame = next;
+						this.position = 0;
+					}
+					else if (LoopbackConnection.this.outboundQueue.isClosed() && LoopbackConnection.this.outboundQueue.isEmpty())
+					{
+						return false;
+					}
+					else if (block)
+					{
+						throw new SocketTimeoutException("Read timed out");
+					}
+					else
+					{
+						return true;
+					}
+				}
+				return true;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted when waiting the frame");
+			}
+		}
+
+		@Override
+		public InputStream getInputStream()
+		{
+			return this.inputStream;
+		}
+
+		@Override
+		public OutputStream getOutputStream()
+		{
+			return LoopbackConnection.this.pipe.getOutputStream();
+		}
+
+		@Override
+		public void setReadTimeout(int timeout)
+		{
+			this.readTimeout = Math.max(0, timeout);
+		}
+
+		@Override
+		public void awaitInput(long timeout) throws InterruptedException
+		{
+			if (this.position == this.frame.length)
+			{
+				byte next[] = LoopbackConnection.this.outboundQueue.poll(timeout);
+				if (next != null)
+				{
+					this.frame = next;
+					this.position = 0;
+				}
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			// like closing the socket, the data not yet read by the server is still read
+			LoopbackConnection.this.outboundQueue.clear();
+			LoopbackConnection.this.pipe.close();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Loopback connection";
+		}
+	}
+}
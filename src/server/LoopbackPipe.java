@@ -0,0 +1,205 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Bytes sent from the player to the server inside the same program (see LoopbackConnection)<br>
+ * Every write of the player is put to the queue as one chunk and read by the reader of
+ * the connection, the read wait until there's chunk so the reader doesn't need to
+ * check available() again and again
+ * @author Toshiba
+ *
+ */
+public class LoopbackPipe {
+
+	// chunks not yet read, the first chunk is read from position
+	private ArrayDeque<byte[]> chunks = new ArrayDeque<byte[]>();
+	private int position = 0;
+	private int available = 0;
+
+	// true after the player closed the pipe (the chunks inside still could be read)
+	private boolean closed = false;
+
+	private InputStream inputStream = new InputStream() {
+
+		@Override
+		public int read() throws IOException
+		{
+			byte data[] = new byte[1];
+			return this.read(data, 0, 1) < 0 ? -1 : data[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte data[], int offset, int length) throws IOException
+		{
+			return LoopbackPipe.this.read(data, offset, length);
+		}
+
+		@Override
+		public int available()
+		{
+			return LoopbackPipe.this.available();
+		}
+
+		@Override
+		public void close()
+		{
+			LoopbackPipe.this.clear();
+		}
+	};
+
+	private OutputStream outputStream = new OutputStream() {
+
+		@Override
+		public void write(int data) throws IOException
+		{
+			this.write(new byte[] {(byte) data}, 0, 1);
+		}
+
+		@Override
+		public void write(byte data[], int offset, int length) throws IOException
+		{
+			LoopbackPipe.this.write(data, offset, length);
+		}
+
+		@Override
+		public void close()
+		{
+			LoopbackPipe.this.close();
+		}
+	};
+
+	/**
+	 * Get the stream read by the server
+	 * @return the input stream
+	 */
+	public InputStream getInputStream()
+	{
+		return this.inputStream;
+	}
+
+	/**
+	 * Get the stream written by the player
+	 * @return the output stream
+	 */
+	public OutputStream getOutputStream()
+	{
+		return this.outputStream;
+	}
+
+	/**
+	 * Put the copy of the data to the pipe
+	 * @param data : array containing the data
+	 * @param offset : start of the data
+	 * @param length : length of the data
+	 * @throws IOException if the pipe is already closed
+	 */
+	private synchronized void write(byte data[], int offset, int length) throws IOException
+	{
+		if (this.closed)
+		{
+			throw new IOException("Pipe closed");
+		}
+		if (length == 0)
+		{
+			return;
+		}
+		byte chunk[] = new byte[length];
+		System.arraycopy(data, offset, chunk, 0, length);
+		this.chunks.add(chunk);
+		this.available += length;
+		this.notifyAll();
+	}
+
+	/**
+	 * Read the data, wait until there's data or the pipe is closed
+	 * @param data : array for the data
+	 * @param offset : start of the data inside the array
+	 * @param length : maximum length of the data
+	 * @return amount of byte read, -1 if the pipe is closed and empty
+	 * @throws IOException if the thread is interrupted when waiting
+	 */
+	private synchronized int read(byte data[], int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+		try
+		{
+			while (this.chunks.isEmpty() && !this.closed)
+			{
+				this.wait();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted when waiting the pipe");
+		}
+		if (this.chunks.isEmpty())
+		{
+			return -1;
+		}
+
+		// read as much as possible from the chunks already arrived
+		int read = 0;
+		while (read < length && !this.chunks.isEmpty())
+		{
+			byte chunk[] = this.chunks.peek();
+			int size = Math.min(length - read, chunk.length - this.position);
+			System.arraycopy(chunk, this.position, data, offset + read, size);
+			read += size;
+			this.position += size;
+			if (this.position == chunk.length)
+			{
+				this.chunks.poll();
+				this.position = 0;
+			}
+		}
+		this.available -= read;
+		return read;
+	}
+
+	/**
+	 * Get amount of byte that could be read without waiting
+	 * @return amount of byte
+	 */
+	private synchronized int available()
+	{
+		return this.available;
+	}
+
+	/**
+	 * Close the pipe, the data inside still could be read and after that the read return -1
+	 */
+	public synchronized void close()
+	{
+		this.closed = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Close the pipe and remove all data inside
+	 */
+	public synchronized void clear()
+	{
+		this.closed = true;
+		this.chunks.clear();
+		this.position = 0;
+		this.available = 0;
+		this.notifyAll();
+	}
+
+	/**
+	 * Check if the pipe is already closed
+	 * @return true if closed
+	 */
+	public synchronized boolean isClosed()
+	{
+		return this.closed;
+	}
+}
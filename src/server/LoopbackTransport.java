@@ -0,0 +1,59 @@
+package server;
+
+import java.io.IOException;
+
+import Utility.ClientConnection;
+
+/**
+ * Transport for the player inside the same program as the server (the player who
+ * created the lobby), the player get their connection from connect() instead of
+ * opening the socket to localhost, see LoopbackConnection
+ * @author Toshiba
+ *
+ */
+public class LoopbackTransport implements GameTransport {
+
+	// the engine used by the player, null before the transport is started
+	private volatile GameEngine engine = null;
+
+	// true after the transport is closed
+	private volatile boolean closed = false;
+
+	@Override
+	public void start(GameEngine engine)
+	{
+		this.engine = engine;
+	}
+
+	/**
+	 * Connect the player to the engine, the server send the handshake byte like
+	 * the player who connect from the network
+	 * @return the connection used by the client
+	 * @throws IOException if the transport is not yet started or already closed
+	 */
+	public ClientConnection connect() throws IOException
+	{
+		GameEngine engine = this.engine;
+		if (engine == null || this.closed)
+		{
+			throw new IOException("Transport not available");
+		}
+
+		LoopbackConnection connection = new LoopbackConnection(engine.getRoomRegistry());
+		connection.start();
+		return connection.getClientSide();
+	}
+
+	@Override
+	public void close()
+	{
+		// the connection already made is closed by the game (finished instruction)
+		this.closed = true;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Loopback";
+	}
+}
@@ -0,0 +1,114 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measure how many command per second could be sent through one RoomMailbox<br>
+ * Some sender thread put the command as fast as they can to one mailbox (like the
+ * player of one room), the loop of the room only count the command so the result is
+ * the cost of the mailbox itself, the memory allocated by the sender is also shown<br>
+ * Usage: MailboxBenchmark [senders] [commands per sender] [mailbox size]
+ * @author Toshiba
+ *
+ */
+public class MailboxBenchmark {
+
+	/**
+	 * Run the benchmark, the first round is only used to warm up the JVM
+	 * @param args : amount of sender, amount of command sent by each sender, amount of slot
+	 * @throws InterruptedException if interrupted while waiting the sender
+	 */
+	public static void main(String args[]) throws InterruptedException
+	{
+		int senders = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int commands = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		int capacity = args.length > 2 ? Integer.parseInt(args[2]) : Integer.getInteger(RoomMailbox.PROPERTY_CAPACITY, 1024);
+
+		RoomLoop loop = new RoomLoop("benchmark-loop");
+		loop.start();
+
+		run(loop, senders, commands, capacity, false);
+		run(loop, senders, commands, capacity, true);
+
+		loop.shutdownGracefully();
+	}
+
+	/**
+	 * Send the command through a new mailbox and wait until all of them is applied
+	 * @param loop : loop of the room
+	 * @param senders : amount of sender thread
+	 * @param commands : amount of command sent by each sender
+	 * @param capacity : amount of slot inside the ring
+	 * @param print : true to print the result
+	 * @throws InterruptedException if interrupted while waiting the sender
+	 */
+	private static void run(RoomLoop loop, int senders, int commands, int capacity, boolean print) throws InterruptedException
+	{
+		long total = (long) senders * commands;
+		AtomicLong applied = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(1);
+		RoomMailbox mailbox = new RoomMailbox(loop, command -> {
+			if (applied.incrementAndGet() == total)
+			{
+				done.countDown();
+			}
+		}, capacity);
+
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicLong allocated = new AtomicLong();
+		Thread threads[] = new Thread[senders];
+		for (int i = 0; i < senders; i++)
+		{
+			threads[i] = new Thread(() -> {
+				try
+				{
+					start.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				long before = allocatedBytes();
+				for (int j = 0; j < commands; j++)
+				{
+					mailbox.post(RoomCommand.Type.TIME, null, null, null, null, true);
+				}
+				allocated.addAndGet(allocatedBytes() - before);
+			}, "benchmark-sender-" + i);
+			threads[i].start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		done.await();
+		long time = System.nanoTime() - startTime;
+
+		if (print)
+		{
+			System.out.println(String.format(
+					"%d senders, %d commands, %d slots: %.1f ms, %.0f commands/s, %.1f ns/command, %.3f bytes/command (max depth %d)",
+					senders, total, mailbox.getCapacity(), time / 1e6, total * 1e9 / time, (double) time / total,
+					(double) allocated.get() / total, mailbox.getMaxDepth()
+			));
+		}
+	}
+
+	/**
+	 * Get amount of memory allocated by the current thread
+	 * @return amount of bytes, 0 if the JVM can't count it
+	 */
+	private static long allocatedBytes()
+	{
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,530 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import Utility.UtilityProtocol;
+
+/**
+ * Non blocking connection of player handled by NioEventLoop<br>
+ * Input is collected in a buffer and instruction is processed after all of
+ * its byte arrived, frames are collected in a buffer and written by the event loop
+ * @author Toshiba
+ *
+ */
+public class NioClientConnection extends ServerClientConnection {
+
+	// initial size of input buffer, maximum size of input buffer
+	// (longest instruction is chat with 512 chars, 1029 byte) and size of output buffer
+	private static final int INITIAL_BUFFER_SIZE = 2048;
+	private static final int MAXIMUM_INPUT_SIZE = 65536;
+	private static final int OUTPUT_BUFFER_SIZE = 16384;
+
+	// channel of the connection and the event loop handling it
+	private SocketChannel channel;
+	private NioEventLoop loop;
+	private SelectionKey key = null;
+
+	// buffer for input that not yet processed (in write mode)
+	private ByteBuffer inputBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	// frames taken from outbound queue by event loop to be written to channel (in read mode),
+	// all frames waiting in the queue is taken together and written in one write
+	private ByteBuffer queuedOutput = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE).flip();
+
+	// data being written to the channel (in read mode), the queued output itself
+	// or the compressed data of it if the player use compression
+	private ByteBuffer writingOutput = this.queuedOutput;
+
+	// compression of the output and the input, null if the player doesn't use compression,
+	// compressed input is read to compressedInput (in write mode) and decompressed to inputBuffer
+	private FrameCompressor compressor = null;
+	private Inflater inflater = null;
+	private ByteBuffer compressedInput = null;
+
+	// prevent asking the event loop to write more than once before it write the data
+	private AtomicBoolean writeRequested = new AtomicBoolean(false);
+
+	// condition of the connection
+	private volatile boolean closeAfterWrite = false;
+	private volatile boolean forceClose = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor for the connection, will be registered to the event loop
+	 * @param channel : channel of the connection
+	 * @param loop : event loop that will handle the connection
+	 * @param roomRegistry : registry of the room inside the server
+	 * @throws IOException if failed to configure the channel
+	 */
+	public NioClientConnection(SocketChannel channel, NioEventLoop loop, RoomRegistry roomRegistry) throws IOException
+	{
+		super(roomRegistry);
+		this.channel = channel;
+		this.loop = loop;
+
+		this.channel.configureBlocking(false);
+
+		// handshake byte is queued before the event loop could read anything
+		// from the player, so it is always the first byte sent to the player
+		this.handshake();
+		this.loop.register(this);
+	}
+
+	/**
+	 * Get channel of the connection
+	 * @return channel of the connection
+	 */
+	public SocketChannel getChannel()
+	{
+		return this.channel;
+	}
+
+	/**
+	 * Set key of the connection after registered to the selector
+	 * @param key : selection key of the connection
+	 */
+	public void setSelectionKey(SelectionKey key)
+	{
+		this.key = key;
+	}
+
+	/**
+	 * Read available data from the channel and process all instruction that already
+	 * arrived completely, called by event loop
+	 * @throws IOException if the channel is closed
+	 */
+	public void readFromChannel() throws IOException
+	{
+		if (this.channel.read(this.inflater == null ? this.inputBuffer : this.compressedInput) < 0)
+		{
+			throw new EOFException();
+		}
+		this.lastClientRespon = System.currentTimeMillis();
+
+		if (this.inflater == null)
+		{
+			this.processInput();
+		}
+
+		// compression could be started by the first byte processed above,
+		// in that case the byte after it is already moved to compressedInput
+		if (this.inflater != null && !this.closed)
+		{
+			this.inflateInput();
+		}
+	}
+
+	/**
+	 * Process all instruction inside inputBuffer that already arrived completely
+	 * @throws IOException if the instruction is too long
+	 */
+	private void processInput() throws IOException
+	{
+		this.inputBuffer.flip();
+		while (!this.closed && this.processInstruction(this.inputBuffer))
+		{
+
+		}
+		this.inputBuffer.compact();
+
+		if (!this.inputBuffer.hasRemaining())
+		{
+			// instruction is bigger than the buffer, make the buffer bigger
+			if (this.inputBuffer.capacity() >= MAXIMUM_INPUT_SIZE)
+			{
+				throw new IOException("Instruction too long");
+			}
+			ByteBuffer biggerBuffer = ByteBuffer.allocate(this.inputBuffer.capacity() * 2);
+			this.inputBuffer.flip();
+			biggerBuffer.put(this.inputBuffer);
+			this.inputBuffer = biggerBuffer;
+		}
+	}
+
+	/**
+	 * Decompress the data inside compressedInput to inputBuffer and process the instruction,
+	 * if the buffer is full the instruction is processed first before decompress the rest
+	 * @throws IOException if the data is not valid or the instruction is too long
+	 */
+	private void inflateInput() throws IOException
+	{
+		this.compressedInput.flip();
+		this.inflater.setInput(this.compressedInput);
+		try
+		{
+			boolean bufferFull;
+			do
+			{
+				long bytesRead = this.inflater.getBytesRead();
+				int start = this.inputBuffer.position();
+				this.inflater.inflate(this.inputBuffer);
+				this.compressionStats.addReceived(this.inflater.getBytesRead() - bytesRead, this.inputBuffer.position() - start);
+				if (this.inflater.finished() || this.inflater.needsDictionary())
+				{
+					throw new IOException("Compressed data is not valid");
+				}
+
+				bufferFull = !this.inputBuffer.hasRemaining();
+				this.processInput();
+			}
+			while (bufferFull && !this.closed);
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Compressed data is not valid", e);
+		}
+		this.compressedInput.compact();
+	}
+
+	/**
+	 * Process one instruction from the buffer if all of its byte already arrived,
+	 * the code is the same with ServerClientThread
+	 * @param buffer : buffer in read mode
+	 * @return true if one instruction was processed
+	 * @throws IOException if failed to send data to player
+	 */
+	private boolean processInstruction(ByteBuffer buffer) throws IOException
+	{
+		if (!buffer.hasRemaining())
+		{
+			return false;
+		}
+
+		int start = buffer.position();
+		byte code = buffer.get(start);
+
+		if (!this.firstByteReceived)
+		{
+			// the first byte tell which protocol version used by the player
+			this.firstByteReceived = true;
+			if (code == UtilityProtocol.HELLO_V2 || code == UtilityProtocol.HELLO_V2_DEFLATE)
+			{
+				buffer.get();
+				this.onHello(code == UtilityProtocol.HELLO_V2_DEFLATE);
+				return true;
+			}
+		}
+
+		if (this.protocolVersion == UtilityProtocol.VERSION_2)
+		{
+			return this.processFrame(buffer);
+		}
+
+		if (code == 1 || code == 3 || code == 12)
+		{
+			// instruction with string, byte-integer-chars
+			if (buffer.remaining() < 5)
+			{
+				return false;
+			}
+			int stringLength = buffer.getInt(start + 1);
+			if (stringLength < 0 || stringLength > UtilityProtocol.MAXIMUM_FRAME_LENGTH / 2)
+			{
+				// same limit as the string of the threaded connection (UtilityProtocol.readString)
+				throw new IOException("String too long");
+			}
+			if (buffer.remaining() < 5 + stringLength * 2)
+			{
+				return false;
+			}
+			buffer.position(start + 5);
+
+			StringBuffer stringBuffer = new StringBuffer();
+			for (int i = 0; i < stringLength; i++)
+			{
+				stringBuffer.append(buffer.getChar());
+			}
+			String text = stringBuffer.toString();
+
+			if (code == 1)
+			{
+				this.onPlayerName(text);
+			}
+			else if (code == 3)
+			{
+				this.onLobbyChat(text);
+			}
+			else
+			{
+				this.onGameChat(text);
+			}
+		}
+		else if (code == 10)
+		{
+			// drawing instruction, byte-6 integer
+			if (buffer.remaining() < 25)
+			{
+				return false;
+			}
+			buffer.get();
+			int data[] = {buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()};
+			this.onImageTexture(data);
+		}
+		else
+		{
+			// instruction with just one byte
+			buffer.get();
+
+			if (code == 0)
+			{
+				this.onTestByte();
+			}
+			else if (code == 2)
+			{
+				// the player send disconnect instruction
+				this.closed = true;
+				this.removeFromGame();
+				this.closeChannel();
+			}
+			else if (code == 4)
+			{
+				this.onStartGame();
+			}
+			else if (code == 11)
+			{
+				this.onStopDrawing();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Process one instruction of protocol version 2 from the buffer if all of its byte
+	 * already arrived, code followed by varint length of the data and the data
+	 * @param buffer : buffer in read mode
+	 * @return true if one instruction was processed
+	 * @throws IOException if the instruction is not valid or failed to send data to player
+	 */
+	private boolean processFrame(ByteBuffer buffer) throws IOException
+	{
+		int start = buffer.position();
+		byte code = buffer.get(start);
+
+		// varint length, 7 bit every byte, the highest bit tell there's still next byte
+		int length = 0;
+		int position = start + 1;
+		int shift = 0;
+		byte lengthByte;
+		do
+		{
+			if (position >= buffer.limit())
+			{
+				return false;
+			}
+			if (shift >= 35)
+			{
+				throw new IOException("Varint too long");
+			}
+			lengthByte = buffer.get(position);
+			position += 1;
+			length |= (lengthByte & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((lengthByte & 0x80) != 0);
+
+		if (length < 0 || length > UtilityProtocol.MAXIMUM_FRAME_LENGTH)
+		{
+			throw new IOException("Instruction too long");
+		}
+		if (buffer.limit() - position < length)
+		{
+			return false;
+		}
+		buffer.position(position + length);
+
+		if (code == 2)
+		{
+			// the player send disconnect instruction
+			this.closed = true;
+			this.removeFromGame();
+			this.closeChannel();
+		}
+		else
+		{
+			this.onFrame(code, new DataInputStream(
+					new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + position, length)
+			));
+		}
+		return true;
+	}
+
+	/**
+	 * Write pending output to the channel, if the channel can't receive all of the data
+	 * the event loop will continue when the channel is ready, called by event loop
+	 * @throws IOException if the channel is closed
+	 */
+	public void writeToChannel() throws IOException
+	{
+		this.writeRequested.set(false);
+
+		if (this.forceClose)
+		{
+			this.connectionLost();
+			return;
+		}
+		if (this.key == null || this.closed)
+		{
+			// not yet registered, will be written after registered
+			return;
+		}
+
+		while (true)
+		{
+			if (!this.writingOutput.hasRemaining())
+			{
+				if (this.outboundQueue.pollMarker(OutboundQueue.START_COMPRESSION))
+				{
+					// frames after this is compressed
+					this.compressor = new FrameCompressor(this.compressionStats);
+				}
+
+				// take the next frames from the outbound queue
+				this.queuedOutput.clear();
+				this.queuedOutput = this.outboundQueue.drainTo(this.queuedOutput);
+				this.queuedOutput.flip();
+				if (!this.queuedOutput.hasRemaining())
+				{
+					if (this.outboundQueue.isEmpty())
+					{
+						break;
+					}
+					// the marker is the first in the queue
+					continue;
+				}
+
+				if (this.compressor == null)
+				{
+					this.writingOutput = this.queuedOutput;
+				}
+				else
+				{
+					this.writingOutput = this.compressor.compress(this.queuedOutput.array(), 0, this.queuedOutput.limit());
+				}
+			}
+
+			this.channel.write(this.writingOutput);
+			if (this.writingOutput.hasRemaining())
+			{
+				// socket buffer is full, wait until it's ready again
+				this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+		}
+
+		this.key.interestOps(SelectionKey.OP_READ);
+
+		if (this.closeAfterWrite)
+		{
+			this.closed = true;
+			this.closeChannel();
+		}
+	}
+
+	/**
+	 * Called when there's problem in the connection, the player will be removed from the game
+	 */
+	public void connectionLost()
+	{
+		if (this.closed)
+		{
+			this.closeChannel();
+			return;
+		}
+		this.closed = true;
+		this.removeFromGame();
+		this.closeChannel();
+	}
+
+	/**
+	 * Close the channel without waiting the output
+	 */
+	private void closeChannel()
+	{
+		try
+		{
+			this.channel.close();
+		}
+		catch (IOException e)
+		{
+
+		}
+
+		// free the memory of the compression
+		if (this.compressor != null)
+		{
+			this.compressor.end();
+		}
+		if (this.inflater != null)
+		{
+			this.inflater.end();
+		}
+	}
+
+	@Override
+	protected void startInputCompression()
+	{
+		// called by the event loop in the middle of processing inputBuffer,
+		// the byte after the first byte is already compressed
+		this.inflater = new Inflater();
+		this.compressedInput = ByteBuffer.allocate(Math.max(INITIAL_BUFFER_SIZE, this.inputBuffer.remaining()));
+		this.compressedInput.put(this.inputBuffer);
+	}
+
+	/**
+	 * Ask the event loop to write the pending output
+	 */
+	private void requestWrite()
+	{
+		if (this.writeRequested.compareAndSet(false, true))
+		{
+			this.loop.requestWrite(this);
+		}
+	}
+
+	@Override
+	protected void frameQueued()
+	{
+		// all frames queued before the event loop take them will be
+		// written together in one write
+		this.requestWrite();
+	}
+
+	@Override
+	protected boolean canBlockWhenQueueFull()
+	{
+		// event loop thread must never wait, the queue could be
+		// emptied by the same event loop
+		return false;
+	}
+
+	@Override
+	protected void closeConnection()
+	{
+		this.closeAfterWrite = true;
+		this.outboundQueue.close();
+		this.requestWrite();
+	}
+
+	@Override
+	public boolean isClosed()
+	{
+		return !this.channel.isOpen();
+	}
+
+	@Override
+	public void forceCloseConnection()
+	{
+		this.forceClose = true;
+		this.outboundQueue.clear();
+		this.requestWrite();
+	}
+}
@@ -0,0 +1,187 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One selector thread handling the IO of many player connection<br>
+ * Reading the input and writing the pending output of every connection
+ * without thread for every player
+ * @author Toshiba
+ *
+ */
+public class NioEventLoop implements Runnable {
+
+	// maximum time waiting in the selector before checking if the loop is shut down (in milliseconds),
+	// the test byte and timeout of the connection is checked by HeartbeatSweeper
+	private static final long SELECT_TIMEOUT = 100;
+
+	// selector for all connection handled by this event loop
+	private Selector selector;
+
+	// thread running this event loop
+	private Thread thread;
+
+	// connection waiting to be registered to the selector and connection
+	// that have new data to be written, both could be added from other thread
+	private Queue<NioClientConnection> registerQueue = new ConcurrentLinkedQueue<NioClientConnection>();
+	private Queue<NioClientConnection> writeQueue = new ConcurrentLinkedQueue<NioClientConnection>();
+
+	// indicate the event loop must stop after all connection is closed
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Constructor for the event loop
+	 * @param name : name of the thread
+	 * @throws IOException if failed to open the selector
+	 */
+	public NioEventLoop(String name) throws IOException
+	{
+		this.selector = Selector.open();
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Start the thread of the event loop
+	 */
+	public void start()
+	{
+		this.thread.start();
+	}
+
+	/**
+	 * Register new connection to this event loop, could be called from any thread
+	 * @param connection : the new connection
+	 */
+	public void register(NioClientConnection connection)
+	{
+		this.registerQueue.add(connection);
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Tell the event loop the connection have new data to be written,
+	 * could be called from any thread
+	 * @param connection : connection that have new data
+	 */
+	public void requestWrite(NioClientConnection connection)
+	{
+		this.writeQueue.add(connection);
+		if (Thread.currentThread() != this.thread)
+		{
+			this.selector.wakeup();
+		}
+	}
+
+	/**
+	 * Stop the event loop after all of the connection is closed
+	 */
+	public void shutdownGracefully()
+	{
+		this.shutdown = true;
+		this.selector.wakeup();
+	}
+
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			try
+			{
+				this.selector.select(SELECT_TIMEOUT);
+			}
+			catch (IOException e)
+			{
+				break;
+			}
+
+			// register the new connection
+			NioClientConnection connection;
+			while ((connection = this.registerQueue.poll()) != null)
+			{
+				try
+				{
+					connection.setSelectionKey(
+							connection.getChannel().register(this.selector, SelectionKey.OP_READ, connection)
+					);
+					connection.writeToChannel();
+				}
+				catch (IOException e)
+				{
+					connection.connectionLost();
+				}
+			}
+
+			// handle the connection that ready to read or write
+			Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+			while (iterator.hasNext())
+			{
+				SelectionKey key = iterator.next();
+				iterator.remove();
+
+				connection = (NioClientConnection) key.attachment();
+				try
+				{
+					if (key.isValid() && key.isReadable())
+					{
+						connection.readFromChannel();
+					}
+					if (key.isValid() && key.isWritable())
+					{
+						connection.writeToChannel();
+					}
+				}
+				catch (IOException | CancelledKeyException e)
+				{
+					connection.connectionLost();
+				}
+				catch (RuntimeException e)
+				{
+					// bug or instruction not expected from this player, only this
+					// player is disconnected, the other player on this loop keep playing
+					e.printStackTrace();
+					connection.connectionLost();
+				}
+			}
+
+			// write data sent by other thread
+			while ((connection = this.writeQueue.poll()) != null)
+			{
+				try
+				{
+					connection.writeToChannel();
+				}
+				catch (IOException | CancelledKeyException e)
+				{
+					connection.connectionLost();
+				}
+				catch (RuntimeException e)
+				{
+					e.printStackTrace();
+					connection.connectionLost();
+				}
+			}
+
+			if (this.shutdown && this.selector.keys().isEmpty())
+			{
+				break;
+			}
+		}
+
+		try
+		{
+			this.selector.close();
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package server;
+
+import java.io.IOException;
+
+/**
+ * Fixed set of NioEventLoop, every new connection will be handled by
+ * one of the event loop chosen by round robin
+ * @author Toshiba
+ *
+ */
+public class NioEventLoopGroup {
+
+	// name of system property to change how many event loop thread created
+	public static final String PROPERTY_THREADS = "skribbl.server.nioThreads";
+
+	// all event loop in this group
+	private NioEventLoop loops[];
+
+	// index of the next event loop that will get new connection
+	private int nextLoop = 0;
+
+	/**
+	 * Constructor for the group, amount of event loop is taken from system property
+	 * skribbl.server.nioThreads, or amount of processor if not set
+	 * @param name : name of the group, used for the thread name
+	 * @throws IOException if failed to open the selector
+	 */
+	public NioEventLoopGroup(String name) throws IOException
+	{
+		this(name, Integer.getInteger(PROPERTY_THREADS, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Constructor for the group
+	 * @param name : name of the group, used for the thread name
+	 * @param threads : amount of event loop thread
+	 * @throws IOException if failed to open the selector
+	 */
+	public NioEventLoopGroup(String name, int threads) throws IOException
+	{
+		this.loops = new NioEventLoop[Math.max(1, threads)];
+		for (int i = 0; i < this.loops.length; i++)
+		{
+			this.loops[i] = new NioEventLoop(name + "-" + i);
+			this.loops[i].start();
+		}
+	}
+
+	/**
+	 * Get the event loop for the new connection
+	 * @return event loop that will handle the connection
+	 */
+	public synchronized NioEventLoop next()
+	{
+		NioEventLoop loop = this.loops[this.nextLoop];
+		this.nextLoop = (this.nextLoop + 1) % this.loops.length;
+		return loop;
+	}
+
+	/**
+	 * Stop all event loop after all of their connection is closed
+	 */
+	public void shutdownGracefully()
+	{
+		for (NioEventLoop loop : this.loops)
+		{
+			loop.shutdownGracefully();
+		}
+	}
+}
@@ -0,0 +1,423 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of frames waiting to be written to one player<br>
+ * The thread sending the data (broadcast) just put the frame here and
+ * the writer of the connection (writer thread or event loop) take it, so
+ * one slow player doesn't stop the other player from getting their data<br>
+ * The waiting is done with lock and condition instead of synchronized and wait, so
+ * the virtual thread waiting here (writer of idle player) doesn't hold its carrier thread
+ * @author Toshiba
+ *
+ */
+public class OutboundQueue {
+
+	/**
+	 * What to do when the queue is full
+	 */
+	public enum OverflowPolicy {
+
+		// disconnect the player, they can't follow the game anymore
+		DISCONNECT,
+
+		// drop the stroke frame (drawing point), other frame is still queued
+		// until two times of the capacity, more than that the player is disconnected
+		DROP_STROKES,
+
+		// wait until there's space in the queue (like the old blocking write)
+		BLOCK;
+
+		/**
+		 * Get the policy from its name, not case sensitive
+		 * @param name : name of the policy ("disconnect", "drop_strokes" or "block")
+		 * @return the policy, DROP_STROKES if the name is null or unknown
+		 */
+		public static OverflowPolicy parse(String name)
+		{
+			if (name != null)
+			{
+				for (OverflowPolicy policy : values())
+				{
+					if (policy.name().equalsIgnoreCase(name.trim()))
+					{
+						return policy;
+					}
+				}
+			}
+			return DROP_STROKES;
+		}
+	}
+
+	// name of system property for the capacity and the overflow policy of all queue
+	public static final String PROPERTY_CAPACITY = "skribbl.server.outboundQueueFrames";
+	public static final String PROPERTY_OVERFLOW_POLICY = "skribbl.server.overflowPolicy";
+
+	// marker put to the queue to tell the writer that every frame after it must be compressed,
+	// it's not a frame (never written), the writer know it by comparing the array
+	public static final byte START_COMPRESSION[] = new byte[0];
+
+	// frames waiting to be written
+	private ArrayDeque<byte[]> frames = new ArrayDeque<byte[]>();
+
+	// lock for everything inside the queue, notEmpty is signaled when frame is added and
+	// notFull when frame is taken, both are signaled when the queue is closed
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = this.lock.newCondition();
+	private final Condition notFull = this.lock.newCondition();
+
+	// maximum amount of frame and what to do if it's full
+	private int capacity;
+	private OverflowPolicy policy;
+
+	// true if no frame could be added anymore
+	private boolean closed = false;
+
+	// metrics of the queue
+	private int maxDepth = 0; // maximum amount of frame ever waiting in the queue
+	private long queuedFrames = 0; // amount of frame ever added
+	private long droppedFrames = 0; // amount of frame dropped because the queue is full
+
+	/**
+	 * Constructor for the queue, capacity and policy taken from system property
+	 * skribbl.server.outboundQueueFrames (default 1024) and skribbl.server.overflowPolicy
+	 * (default drop_strokes)
+	 */
+	public OutboundQueue()
+	{
+		this(
+				Integer.getInteger(PROPERTY_CAPACITY, 1024),
+				OverflowPolicy.parse(System.getProperty(PROPERTY_OVERFLOW_POLICY))
+		);
+	}
+
+	/**
+	 * Constructor for the queue
+	 * @param capacity : maximum amount of frame waiting in the queue
+	 * @param policy : what to do when the queue is full
+	 */
+	public OutboundQueue(int capacity, OverflowPolicy policy)
+	{
+		this.capacity = Math.max(1, capacity);
+		this.policy = policy;
+	}
+
+	/**
+	 * Add frame to the queue
+	 * @param frame : the frame, must not changed after added
+	 * @param droppable : true if the frame could be dropped (stroke frame)
+	 * @param canBlock : false if the caller must not wait (event loop thread),
+	 * BLOCK policy will act like DROP_STROKES for this caller
+	 * @return false if the queue overflowed and the player must be disconnected
+	 * @throws IOException if the queue is already closed
+	 */
+	public boolean offer(byte frame[], boolean droppable, boolean canBlock) throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			if (this.closed)
+			{
+				throw new IOException("Connection closed");
+			}
+
+			if (this.frames.size() >= this.capacity)
+			{
+				if (this.policy == OverflowPolicy.DISCONNECT)
+				{
+					return false;
+				}
+				else if (this.policy == OverflowPolicy.BLOCK && canBlock)
+				{
+					try
+					{
+						while (this.frames.size() >= this.capacity && !this.closed)
+						{
+							this.notFull.await();
+						}
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted when waiting the queue");
+					}
+					if (this.closed)
+					{
+						throw new IOException("Connection closed");
+					}
+				}
+				else if (droppable)
+				{
+					this.droppedFrames += 1;
+					return true;
+				}
+				else if (this.frames.size() >= this.capacity * 2)
+				{
+					return false;
+				}
+			}
+
+			this.frames.add(frame);
+			this.queuedFrames += 1;
+			this.maxDepth = Math.max(this.maxDepth, this.frames.size());
+			this.notEmpty.signalAll();
+			return true;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Take the first frame, wait if the queue is empty
+	 * @return the frame, or null if the queue is closed and empty
+	 * @throws InterruptedException if the thread is interrupted when waiting
+	 */
+	public byte[] take() throws InterruptedException
+	{
+		this.lock.lock();
+		try
+		{
+			while (this.frames.isEmpty() && !this.closed)
+			{
+				this.notEmpty.await();
+			}
+			byte frame[] = this.frames.poll();
+			this.notFull.signalAll();
+			return frame;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Take the first frame, wait if the queue is empty but not longer than the timeout
+	 * @param timeout : longest time to wait in milliseconds, 0 to not wait
+	 * @return the frame, or null if there's no frame after the timeout or the queue is closed and empty
+	 * @throws InterruptedException if the thread is interrupted when waiting
+	 */
+	public byte[] poll(long timeout) throws InterruptedException
+	{
+		this.lock.lock();
+		try
+		{
+			long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+			while (this.frames.isEmpty() && !this.closed && remaining > 0)
+			{
+				remaining = this.notEmpty.awaitNanos(remaining);
+			}
+			byte frame[] = this.frames.poll();
+			if (frame != null)
+			{
+				this.notFull.signalAll();
+			}
+			return frame;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Move as many whole frames as possible to the buffer without waiting,
+	 * if the first frame is bigger than the whole buffer, bigger buffer is returned,
+	 * stop before START_COMPRESSION marker (must be taken by pollMarker)
+	 * @param buffer : buffer in write mode
+	 * @return the buffer containing the frames (in write mode)
+	 */
+	public ByteBuffer drainTo(ByteBuffer buffer)
+	{
+		this.lock.lock();
+		try
+		{
+			byte frame[] = this.frames.peek();
+			if (frame != null && frame.length > buffer.capacity())
+			{
+				buffer = ByteBuffer.allocate(frame.length);
+			}
+			while ((frame = this.frames.peek()) != null && frame != START_COMPRESSION && frame.length <= buffer.remaining())
+			{
+				buffer.put(this.frames.poll());
+			}
+			this.notFull.signalAll();
+			return buffer;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Take the marker if it's the first in the queue
+	 * @param marker : the marker (START_COMPRESSION)
+	 * @return true if the marker was taken
+	 */
+	public boolean pollMarker(byte marker[])
+	{
+		this.lock.lock();
+		try
+		{
+			if (this.frames.peek() != marker)
+			{
+				return false;
+			}
+			this.frames.poll();
+			this.notFull.signalAll();
+			return true;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Check if there's no frame in the queue
+	 * @return true if the queue is empty
+	 */
+	public boolean isEmpty()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.frames.isEmpty();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Check if the queue is closed (the frame inside still could be taken)
+	 * @return true if no frame could be added anymore
+	 */
+	public boolean isClosed()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.closed;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Close the queue, no frame could be added but the frame inside still could be taken
+	 */
+	public void close()
+	{
+		this.lock.lock();
+		try
+		{
+			this.closed = true;
+			this.notEmpty.signalAll();
+			this.notFull.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Close the queue and remove all of the frame inside
+	 */
+	public void clear()
+	{
+		this.lock.lock();
+		try
+		{
+			this.closed = true;
+			this.frames.clear();
+			this.notEmpty.signalAll();
+			this.notFull.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Get amount of frame waiting in the queue
+	 * @return amount of frame waiting in the queue
+	 */
+	public int getDepth()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.frames.size();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Get maximum amount of frame ever waiting in the queue
+	 * @return maximum depth of the queue
+	 */
+	public int getMaxDepth()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.maxDepth;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Get amount of frame ever added to the queue
+	 * @return amount of frame ever added
+	 */
+	public long getQueuedFrames()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.queuedFrames;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Get amount of frame dropped because the queue is full
+	 * @return amount of frame dropped
+	 */
+	public long getDroppedFrames()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.droppedFrames;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+}
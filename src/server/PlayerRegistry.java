@@ -0,0 +1,134 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * List of player connection inside one room, the list is never changed but replaced
+ * by the new array every time a player join or left (copy on write)<br>
+ * Sending data to all player just read the current array without locking and without
+ * creating iterator, the array got from snapshot is never changed so it could be read
+ * by any thread (player count, statistic) while the loop of the room is changing the list
+ * @author Toshiba
+ *
+ */
+public class PlayerRegistry {
+
+	// the array used when there's no player
+	private static final ServerClientConnection EMPTY[] = new ServerClientConnection[0];
+
+	// current list of player, replaced (never changed) when synchronized this registry
+	private volatile ServerClientConnection players[] = EMPTY;
+
+	/**
+	 * Get the current list of player, the array must not be changed
+	 * @return array of the player connection
+	 */
+	public ServerClientConnection[] snapshot()
+	{
+		return this.players;
+	}
+
+	/**
+	 * Get amount of player
+	 * @return amount of player
+	 */
+	public int size()
+	{
+		return this.players.length;
+	}
+
+	/**
+	 * Check if there's no player
+	 * @return true if there's no player
+	 */
+	public boolean isEmpty()
+	{
+		return this.players.length == 0;
+	}
+
+	/**
+	 * Get player at the position
+	 * @param index : position of the player
+	 * @return connection of the player
+	 */
+	public ServerClientConnection get(int index)
+	{
+		return this.players[index];
+	}
+
+	/**
+	 * Check if the player is inside this list
+	 * @param connection : connection of the player
+	 * @return true if the player is inside this list
+	 */
+	public boolean contains(ServerClientConnection connection)
+	{
+		return indexOf(this.players, connection) >= 0;
+	}
+
+	/**
+	 * Add the player at the end of the list
+	 * @param connection : connection of the player
+	 */
+	public synchronized void add(ServerClientConnection connection)
+	{
+		ServerClientConnection newPlayers[] = Arrays.copyOf(this.players, this.players.length + 1);
+		newPlayers[newPlayers.length - 1] = connection;
+		this.players = newPlayers;
+	}
+
+	/**
+	 * Remove the player from the list, the player after them is moved one position forward
+	 * @param connection : connection of the player
+	 * @return true if the player was inside the list
+	 */
+	public synchronized boolean remove(ServerClientConnection connection)
+	{
+		int index = indexOf(this.players, connection);
+		if (index < 0)
+		{
+			return false;
+		}
+
+		ServerClientConnection newPlayers[] = new ServerClientConnection[this.players.length - 1];
+		System.arraycopy(this.players, 0, newPlayers, 0, index);
+		System.arraycopy(this.players, index + 1, newPlayers, index, newPlayers.length - index);
+		this.players = newPlayers;
+		return true;
+	}
+
+	/**
+	 * Replace the whole list
+	 * @param connections : the new list, must not be changed after this
+	 */
+	public synchronized void set(ServerClientConnection connections[])
+	{
+		this.players = connections.length == 0 ? EMPTY : connections;
+	}
+
+	/**
+	 * Remove all player
+	 */
+	public synchronized void clear()
+	{
+		this.players = EMPTY;
+	}
+
+	/**
+	 * Find the position of the player inside the array
+	 * @param players : the array
+	 * @param connection : connection of the player
+	 * @return position of the player, -1 if not found
+	 */
+	private static int indexOf(ServerClientConnection players[], ServerClientConnection connection)
+	{
+		for (int i = 0; i < players.length; i++)
+		{
+			if (players[i] == connection)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
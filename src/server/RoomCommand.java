@@ -0,0 +1,166 @@
+package server;
+
+/**
+ * One instruction for a room, sent by the connection of the player and put to the
+ * mailbox of the room (see RoomMailbox), the room apply all command one by one in the
+ * same order they are sent so the game is only changed by one thread at a time<br>
+ * The command is one slot of the mailbox, created once and filled again for the next
+ * command, so the room must not keep the command after applying it
+ * @author Toshiba
+ *
+ */
+public class RoomCommand {
+
+	/**
+	 * Kind of the command, decide what the room do and which data is used
+	 */
+	public enum Type {
+
+		// player enter the room (sent by the registry)
+		JOIN,
+
+		// player send their name (code 1), uses text
+		NAME,
+
+		// player send chat from lobby view (code 3), uses text
+		LOBBY_CHAT,
+
+		// player pressed the start button (code 4)
+		START,
+
+		// player send one drawing point (code 10), uses data
+		IMAGE_TEXTURE,
+
+		// player send stroke records (STROKE of protocol version 2), uses records
+		STROKE,
+
+		// player stop drawing (code 11)
+		STOP_DRAWING,
+
+		// player send chat from game view (code 12) that could be the answer, uses text
+		GUESS,
+
+		// connection of the player (protocol version 1) ask the remaining time of the turn
+		TIME,
+
+		// player left the room (code 2 or the connection is broken)
+		LEAVE,
+
+		// the server is deleted and the game must be stopped, connection is null
+		FINISH
+	}
+
+	// data of the command, written by the sender before the sequence number is published
+	// and cleared by the loop after the command is applied
+	private Type type;
+	private ServerClientConnection connection;
+	private String text;
+	private int data[];
+	private byte records[];
+
+	// sequence number of the command inside the slot, the command is ready to be applied
+	// when its sequence number is the one expected by the loop
+	private volatile long sequence;
+
+	/**
+	 * Constructor for the slot of the command, created once by RoomMailbox
+	 * @param sequence : sequence number before the first command of this slot
+	 */
+	RoomCommand(long sequence)
+	{
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Fill the slot with the command, called by the sender after claiming the slot
+	 * @param type : kind of the command
+	 * @param connection : connection of the player who send the command
+	 * @param text : name or chat of the player, null if not used
+	 * @param data : drawing point, null if not used
+	 * @param records : stroke records, null if not used
+	 */
+	void set(Type type, ServerClientConnection connection, String text, int data[], byte records[])
+	{
+		this.type = type;
+		this.connection = connection;
+		this.text = text;
+		this.data = data;
+		this.records = records;
+	}
+
+	/**
+	 * Tell the loop the command is ready, must be called after the slot is filled
+	 * @param sequence : sequence number of the command
+	 */
+	void publish(long sequence)
+	{
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Get sequence number of the command inside the slot
+	 * @return sequence number
+	 */
+	long getSequence()
+	{
+		return this.sequence;
+	}
+
+	/**
+	 * Forget the data of the command after it's applied, the sequence number is kept
+	 */
+	void clear()
+	{
+		this.type = null;
+		this.connection = null;
+		this.text = null;
+		this.data = null;
+		this.records = null;
+	}
+
+	/**
+	 * Get kind of the command
+	 * @return kind of the command
+	 */
+	public Type getType()
+	{
+		return this.type;
+	}
+
+	/**
+	 * Get connection of the player who send the command
+	 * @return connection of the player, null for FINISH
+	 */
+	public ServerClientConnection getConnection()
+	{
+		return this.connection;
+	}
+
+	/**
+	 * Get name or chat of the player
+	 * @return name or chat, null if not used
+	 */
+	public String getText()
+	{
+		return this.text;
+	}
+
+	/**
+	 * Get the drawing point
+	 * @return thickness, red, green, blue, x and y, null if not used
+	 */
+	public int[] getData()
+	{
+		return this.data;
+	}
+
+	/**
+	 * Get the stroke records, the records must be a copy because they are read
+	 * after the next instruction of the player is read
+	 * @return data of the STROKE instruction, null if not used
+	 */
+	public byte[] getRecords()
+	{
+		return this.records;
+	}
+}
@@ -0,0 +1,328 @@
+package server;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One thread running the game of many room (see GameRoom)<br>
+ * Every room is pinned to one loop, all instruction of the player inside the room
+ * is put to the queue of the loop and run one by one, so the variable of the room
+ * is only used by one thread and doesn't need any lock<br>
+ * The loop also run the timer of the room (like the end of the turn), the timer is
+ * kept sorted by its time so thousand of timer only cost one small object for every timer
+ * and the thread just wake up when the first timer is due
+ * @author Toshiba
+ *
+ */
+public class RoomLoop implements Runnable {
+
+	// how long the thread wait for new task before checking if the loop is shut down (in milliseconds)
+	private static final long POLL_INTERVAL = 100;
+
+	// how often the loop thread sample its utilization (in milliseconds)
+	private static final long SAMPLE_INTERVAL = 1000;
+
+	// loop of the current thread, null if the current thread is not a room loop
+	private static final ThreadLocal<RoomLoop> currentLoop = new ThreadLocal<RoomLoop>();
+
+	// thread running this loop and the task waiting to be run
+	private Thread thread;
+	private BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+
+	// timer waiting to be run, the first is the earliest, only used by the loop thread,
+	// timerSequence make the timer with the same time run in the order they are scheduled
+	private PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+	private long timerSequence = 0;
+	private volatile int timerCount = 0;
+
+	// amount of room and player inside all room of this loop, used to place the new room
+	private AtomicInteger rooms = new AtomicInteger();
+	private AtomicInteger players = new AtomicInteger();
+
+	// time used to run the task and the time when the utilization is last sampled (in nanoseconds),
+	// busyTime and taskStart (0 when waiting for task) is only written by the loop thread,
+	// utilization is the result of the last sample
+	private volatile long busyTime = 0;
+	private volatile long taskStart = 0;
+	private long lastBusyTime = 0;
+	private long lastReportTime = System.nanoTime();
+	private volatile double utilization = 0;
+
+	// indicate the loop must stop after all task is run
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Constructor for the loop
+	 * @param name : name of the thread
+	 */
+	public RoomLoop(String name)
+	{
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Start the thread of the loop
+	 */
+	public void start()
+	{
+		this.thread.start();
+	}
+
+	/**
+	 * Put the task to the queue of this loop, could be called from any thread
+	 * @param task : the task
+	 */
+	public void execute(Runnable task)
+	{
+		this.tasks.add(task);
+	}
+
+	/**
+	 * Run the task by this loop after the delay, must be called by the loop thread
+	 * (the room schedule its timer when applying the command)
+	 * @param delay : time until the task is run (in milliseconds)
+	 * @param task : the task
+	 * @return the timer, could be cancelled before the task is run
+	 */
+	public Timer schedule(long delay, Runnable task)
+	{
+		Timer timer = new Timer(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay)), this.timerSequence, task);
+		this.timerSequence += 1;
+		this.timers.add(timer);
+		this.timerCount = this.timers.size();
+		return timer;
+	}
+
+	/**
+	 * Check if the current thread is the thread of any room loop, the room loop
+	 * must never wait (for example the outbound queue of slow player)
+	 * @return true if the current thread is a room loop
+	 */
+	public static boolean inRoomLoop()
+	{
+		return currentLoop.get() != null;
+	}
+
+	/**
+	 * Change amount of room inside this loop
+	 * @param amount : amount of room added, negative if removed
+	 */
+	public void addRooms(int amount)
+	{
+		this.rooms.addAndGet(amount);
+	}
+
+	/**
+	 * Change amount of player inside all room of this loop
+	 * @param amount : amount of player added, negative if removed
+	 */
+	public void addPlayers(int amount)
+	{
+		this.players.addAndGet(amount);
+	}
+
+	/**
+	 * Get amount of room inside this loop
+	 * @return amount of room
+	 */
+	public int getRoomCount()
+	{
+		return this.rooms.get();
+	}
+
+	/**
+	 * Get amount of player inside all room of this loop
+	 * @return amount of player
+	 */
+	public int getPlayerCount()
+	{
+		return this.players.get();
+	}
+
+	/**
+	 * Get amount of task waiting to be run
+	 * @return amount of task
+	 */
+	public int getQueueDepth()
+	{
+		return this.tasks.size();
+	}
+
+	/**
+	 * Get amount of timer waiting to be run (including the cancelled timer not yet removed)
+	 * @return amount of timer
+	 */
+	public int getTimerCount()
+	{
+		return this.timerCount;
+	}
+
+	/**
+	 * Get how much of the time the thread was running task inside the last sample,
+	 * doesn't change the next sample so it could be read anytime (report, log)
+	 * @return utilization, 0 (always waiting) until 1 (always busy)
+	 */
+	public double getUtilization()
+	{
+		return this.utilization;
+	}
+
+	/**
+	 * Count how much of the time the thread was running task since the last sample
+	 * (or since the loop created) and start the next sample, called by the loop
+	 * thread every SAMPLE_INTERVAL
+	 * @return utilization, 0 (always waiting) until 1 (always busy)
+	 */
+	public synchronized double sampleUtilization()
+	{
+		long now = System.nanoTime();
+		long taskStart = this.taskStart;
+		long busyTime = this.busyTime;
+		if (taskStart != 0)
+		{
+			// the task that is still running is counted until now
+			busyTime += now - taskStart;
+		}
+		double utilization = (double) (busyTime - this.lastBusyTime) / Math.max(1, now - this.lastReportTime);
+		this.lastBusyTime = busyTime;
+		this.lastReportTime = now;
+		this.utilization = Math.min(1, utilization);
+		return this.utilization;
+	}
+
+	/**
+	 * Stop the loop after all task inside the queue is run
+	 */
+	public void shutdownGracefully()
+	{
+		this.shutdown = true;
+	}
+
+	@Override
+	public void run()
+	{
+		currentLoop.set(this);
+		while (!this.shutdown || !this.tasks.isEmpty())
+		{
+			// wait for new task but not after the first timer is due
+			long waitTime = TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL);
+			Timer firstTimer = this.timers.peek();
+			if (firstTimer != null)
+			{
+				waitTime = Math.max(0, Math.min(waitTime, firstTimer.time - System.nanoTime()));
+			}
+
+			Runnable task;
+			try
+			{
+				task = this.tasks.poll(waitTime, TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+			if (task != null)
+			{
+				this.runTask(task);
+			}
+
+			// run all timer that is already due
+			long now = System.nanoTime();
+			while (!this.timers.isEmpty() && this.timers.peek().time - now <= 0)
+			{
+				Timer timer = this.timers.poll();
+				this.timerCount = this.timers.size();
+				if (!timer.cancelled)
+				{
+					this.runTask(timer.task);
+				}
+			}
+
+			if (now - this.lastReportTime >= TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL))
+			{
+				this.sampleUtilization();
+			}
+		}
+	}
+
+	/**
+	 * Run the task and count the time used
+	 * @param task : the task
+	 */
+	private void runTask(Runnable task)
+	{
+		long start = System.nanoTime();
+		this.taskStart = start;
+		try
+		{
+			task.run();
+		}
+		catch (RuntimeException e)
+		{
+			// one broken task must not stop the game of every room inside this loop
+			e.printStackTrace();
+		}
+		this.busyTime += System.nanoTime() - start;
+		this.taskStart = 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"%s: %d rooms, %d players, %d queued, %d timers, %.1f%% busy",
+				this.thread.getName(), this.getRoomCount(), this.getPlayerCount(),
+				this.getQueueDepth(), this.getTimerCount(), this.getUtilization() * 100
+		);
+	}
+
+	/**
+	 * Task scheduled to be run by the loop at certain time
+	 */
+	public static class Timer implements Comparable<Timer> {
+
+		// time when the task is run (System.nanoTime) and order of the timer with the same time
+		private final long time;
+		private final long sequence;
+		private final Runnable task;
+
+		// cancelled timer is not run and removed when its time arrived,
+		// only used by the loop thread
+		private boolean cancelled = false;
+
+		/**
+		 * Constructor for the timer
+		 * @param time : time when the task is run
+		 * @param sequence : order of the timer with the same time
+		 * @param task : the task
+		 */
+		private Timer(long time, long sequence, Runnable task)
+		{
+			this.time = time;
+			this.sequence = sequence;
+			this.task = task;
+		}
+
+		/**
+		 * Stop the task from being run, must be called by the loop thread
+		 */
+		public void cancel()
+		{
+			this.cancelled = true;
+		}
+
+		@Override
+		public int compareTo(Timer other)
+		{
+			if (this.time != other.time)
+			{
+				return this.time - other.time < 0 ? -1 : 1;
+			}
+			return Long.compare(this.sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package server;
+
+/**
+ * Fixed set of RoomLoop, every new room will be run by the loop
+ * with the least player (and the least room if the same)
+ * @author Toshiba
+ *
+ */
+public class RoomLoopGroup {
+
+	// name of system property to change how many room loop thread created
+	public static final String PROPERTY_THREADS = "skribbl.server.roomLoops";
+
+	// all loop in this group
+	private RoomLoop loops[];
+
+	/**
+	 * Constructor for the group, amount of loop is taken from system property
+	 * skribbl.server.roomLoops, or amount of processor if not set
+	 * @param name : name of the group, used for the thread name
+	 */
+	public RoomLoopGroup(String name)
+	{
+		this(name, Integer.getInteger(PROPERTY_THREADS, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Constructor for the group
+	 * @param name : name of the group, used for the thread name
+	 * @param threads : amount of loop thread
+	 */
+	public RoomLoopGroup(String name, int threads)
+	{
+		this.loops = new RoomLoop[Math.max(1, threads)];
+		for (int i = 0; i < this.loops.length; i++)
+		{
+			this.loops[i] = new RoomLoop(name + "-room-" + i);
+			this.loops[i].start();
+		}
+	}
+
+	/**
+	 * Get the loop for the new room, the room must be added to the loop
+	 * before the next room placed (called when synchronized the registry)
+	 * @return loop that will run the room
+	 */
+	public RoomLoop place()
+	{
+		RoomLoop chosen = this.loops[0];
+		for (RoomLoop loop : this.loops)
+		{
+			if (loop.getPlayerCount() < chosen.getPlayerCount()
+					|| (loop.getPlayerCount() == chosen.getPlayerCount() && loop.getRoomCount() < chosen.getRoomCount()))
+			{
+				chosen = loop;
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * Get all loop in this group
+	 * @return array of the loop, must not be changed
+	 */
+	public RoomLoop[] getLoops()
+	{
+		return this.loops;
+	}
+
+	/**
+	 * Stop all loop after all of their task is run
+	 */
+	public void shutdownGracefully()
+	{
+		for (RoomLoop loop : this.loops)
+		{
+			loop.shutdownGracefully();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder report = new StringBuilder();
+		for (RoomLoop loop : this.loops)
+		{
+			if (report.length() > 0)
+			{
+				report.append(System.lineSeparator());
+			}
+			report.append(loop);
+		}
+		return report.toString();
+	}
+}
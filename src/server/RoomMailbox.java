@@ -0,0 +1,203 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mailbox of one room, ring of RoomCommand created once and reused for every command<br>
+ * Any thread could put the command (claim the next sequence number, fill the slot and
+ * publish it), the loop of the room take the command one by one in the order of the
+ * sequence number and give it to the handler, so sending instruction to the room doesn't
+ * create any object. If the ring is full the sender wait until the loop take the oldest command,
+ * or the command is refused if the sender can't wait (event loop thread serving many player)
+ * @author Toshiba
+ *
+ */
+public class RoomMailbox {
+
+	/**
+	 * Receiver of the command, run by the loop of the room
+	 */
+	public interface Handler {
+
+		/**
+		 * Apply the command, the command is reused after this so it must not be kept
+		 * @param command : the command
+		 */
+		void handle(RoomCommand command);
+	}
+
+	// name of system property to change amount of slot inside the ring (rounded up to power of two)
+	public static final String PROPERTY_CAPACITY = "skribbl.server.mailboxSize";
+
+	// maximum amount of command applied in one task of the loop, so one busy room
+	// doesn't stop the other room inside the same loop for too long
+	private static final int MAXIMUM_COMMANDS_PER_DRAIN = 64;
+
+	// how long the sender wait before checking the ring again when it's full (in nanoseconds)
+	private static final long FULL_WAIT = 50000;
+
+	// the slot, the command with sequence number n is inside slots[n & mask]
+	private final RoomCommand slots[];
+	private final int mask;
+
+	// next sequence number for the sender and the next sequence number taken by the loop
+	// (only written by the loop), the slot could be filled again after the loop took it
+	private final AtomicLong claimed = new AtomicLong();
+	private volatile long consumed = 0;
+
+	// the loop running the handler and the task draining this mailbox (created once),
+	// drainScheduled is true when the task is already put to the loop
+	private final RoomLoop loop;
+	private final Handler handler;
+	private final Runnable drainTask = this::drain;
+	private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+	// the highest amount of command ever waiting inside the ring
+	private final AtomicInteger maxDepth = new AtomicInteger();
+
+	/**
+	 * Constructor for the mailbox, amount of slot is taken from
+	 * system property skribbl.server.mailboxSize (default 1024)
+	 * @param loop : loop running the handler
+	 * @param handler : receiver of the command
+	 */
+	public RoomMailbox(RoomLoop loop, Handler handler)
+	{
+		this(loop, handler, Integer.getInteger(PROPERTY_CAPACITY, 1024));
+	}
+
+	/**
+	 * Constructor for the mailbox
+	 * @param loop : loop running the handler
+	 * @param handler : receiver of the command
+	 * @param capacity : amount of slot inside the ring, rounded up to power of two
+	 */
+	public RoomMailbox(RoomLoop loop, Handler handler, int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.slots = new RoomCommand[size];
+		for (int i = 0; i < size; i++)
+		{
+			// the sequence number of the empty slot is the one before its first command
+			this.slots[i] = new RoomCommand(i - size);
+		}
+		this.mask = size - 1;
+		this.loop = loop;
+		this.handler = handler;
+	}
+
+	/**
+	 * Put the command to this mailbox, could be called from any thread, but the loop
+	 * of the room must not wait (the loop will never take the command if it's waiting here)
+	 * @param type : kind of the command
+	 * @param connection : connection of the player who send the command
+	 * @param text : name or chat of the player, null if not used
+	 * @param data : drawing point, null if not used
+	 * @param records : stroke records, null if not used
+	 * @param canWait : true if the sender could wait when the ring is full
+	 * @return false if the ring is full and the sender can't wait (the command is not put)
+	 */
+	public boolean post(RoomCommand.Type type, ServerClientConnection connection, String text, int data[], byte records[], boolean canWait)
+	{
+		// the sequence number is only claimed when there's free slot,
+		// so the sender that can't wait never hold a slot it can't fill
+		long sequence;
+		while (true)
+		{
+			sequence = this.claimed.get();
+			if (sequence - this.consumed >= this.slots.length)
+			{
+				if (!canWait)
+				{
+					return false;
+				}
+				// the ring is full, the loop is already asked to drain it
+				LockSupport.parkNanos(FULL_WAIT);
+			}
+			else if (this.claimed.compareAndSet(sequence, sequence + 1))
+			{
+				break;
+			}
+		}
+
+		RoomCommand slot = this.slots[(int) sequence & this.mask];
+		slot.set(type, connection, text, data, records);
+		slot.publish(sequence);
+
+		this.maxDepth.accumulateAndGet((int) (sequence + 1 - this.consumed), Math::max);
+		if (this.drainScheduled.compareAndSet(false, true))
+		{
+			this.loop.execute(this.drainTask);
+		}
+		return true;
+	}
+
+	/**
+	 * Give the published command to the handler, run by the loop of the room
+	 */
+	private void drain()
+	{
+		long sequence = this.consumed;
+		for (int i = 0; i < MAXIMUM_COMMANDS_PER_DRAIN; i++)
+		{
+			RoomCommand slot = this.slots[(int) sequence & this.mask];
+			if (slot.getSequence() != sequence)
+			{
+				// not yet published
+				break;
+			}
+
+			try
+			{
+				this.handler.handle(slot);
+			}
+			catch (RuntimeException e)
+			{
+				// one broken command must not stop the other command of this room
+				e.printStackTrace();
+			}
+
+			// forget the data so it could be collected, then give the slot back to the sender
+			slot.clear();
+			sequence += 1;
+			this.consumed = sequence;
+		}
+
+		// the command published after the last check and before this is applied by the next task
+		this.drainScheduled.set(false);
+		if (this.slots[(int) sequence & this.mask].getSequence() == sequence && this.drainScheduled.compareAndSet(false, true))
+		{
+			this.loop.execute(this.drainTask);
+		}
+	}
+
+	/**
+	 * Get amount of command waiting inside this mailbox (including the one being filled)
+	 * @return amount of command
+	 */
+	public int getDepth()
+	{
+		return (int) Math.max(0, this.claimed.get() - this.consumed);
+	}
+
+	/**
+	 * Get the highest amount of command ever waiting inside this mailbox
+	 * @return amount of command
+	 */
+	public int getMaxDepth()
+	{
+		return this.maxDepth.get();
+	}
+
+	/**
+	 * Get amount of slot inside the ring
+	 * @return amount of slot
+	 */
+	public int getCapacity()
+	{
+		return this.slots.length;
+	}
+}
@@ -0,0 +1,238 @@
+package server;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Utility.CompressionStats;
+
+/**
+ * Registry of all room inside one server, the room is found by its join code
+ * sent by the player with JOIN_ROOM (see UtilityProtocol)<br>
+ * The room is created when the first player join with the code and removed when
+ * the last player left, player who never send the code (like the old client)
+ * join the default room (empty code)<br>
+ * Every room is run by one loop of the RoomLoopGroup, the registry is only
+ * locked when the room is created or removed, not for every instruction<br>
+ * The registry also keep the thing shared by every connection of the server
+ * (compression counter and HeartbeatSweeper)
+ * @author Toshiba
+ *
+ */
+public class RoomRegistry {
+
+	// code of the room used by player who doesn't send the code
+	public static final String DEFAULT_ROOM = "";
+
+	// maximum length of the join code
+	public static final int MAXIMUM_CODE_LENGTH = 8;
+
+	// all room that still have player, the key is the join code, changed
+	// when synchronized this registry (just when room is created or removed)
+	private ConcurrentHashMap<String, GameRoom> rooms = new ConcurrentHashMap<String, GameRoom>();
+
+	// loops running the game of all room
+	private RoomLoopGroup loopGroup;
+
+	// checker of all connection in this server (test byte and timeout)
+	private HeartbeatSweeper heartbeat;
+
+	// counter of the compressed bytes of all player in this server
+	private CompressionStats compressionStats = new CompressionStats();
+
+	// listener told when room is created ("RoomCreated") or removed ("RoomRemoved"), could be null
+	private PropertyChangeListener roomListener;
+
+	/**
+	 * Constructor for the registry
+	 * @param loopGroup : loops running the game of all room
+	 * @param heartbeat : checker of all connection in this server
+	 * @param roomListener : listener told when room is created or removed, null if not needed
+	 */
+	public RoomRegistry(RoomLoopGroup loopGroup, HeartbeatSweeper heartbeat, PropertyChangeListener roomListener)
+	{
+		this.loopGroup = loopGroup;
+		this.heartbeat = heartbeat;
+		this.roomListener = roomListener;
+	}
+
+	/**
+	 * Find the room with the code (created if not yet exist) and ask the loop of the room
+	 * to add the player, if the game inside the room is already started the loop
+	 * will send rejection code to the player
+	 * @param code : join code sent by the player
+	 * @param connection : connection of the player
+	 * @return the room, null if the code is not valid
+	 */
+	public GameRoom join(String code, ServerClientConnection connection)
+	{
+		code = normalizeCode(code);
+		if (code == null)
+		{
+			return null;
+		}
+
+		GameRoom room;
+		boolean created = false;
+		synchronized (this)
+		{
+			room = this.rooms.get(code);
+			if (room == null)
+			{
+				RoomLoop loop = this.loopGroup.place();
+				loop.addRooms(1);
+				room = new GameRoom(code, this, loop);
+				this.rooms.put(code, room);
+				created = true;
+			}
+
+			// the room will not be removed before the loop add the player
+			room.addPendingJoin();
+		}
+		if (created)
+		{
+			this.fireRoomEvent("RoomCreated", room);
+		}
+
+		if (!room.post(RoomCommand.Type.JOIN, connection, connection.canWaitForRoom()))
+		{
+			// the room is flooded and the thread of the player can't wait, the player is denied
+			room.cancelJoin();
+			return null;
+		}
+		return room;
+	}
+
+	/**
+	 * Remove the room from the registry if there's no player inside and no player
+	 * going to join, called by the loop of the room after a player left
+	 * @param room : the room
+	 */
+	void removeIfIdle(GameRoom room)
+	{
+		synchronized (this)
+		{
+			if (!room.isIdle() || !this.rooms.remove(room.getCode(), room))
+			{
+				return;
+			}
+			room.getLoop().addRooms(-1);
+		}
+		this.fireRoomEvent("RoomRemoved", room);
+	}
+
+	/**
+	 * Get the room with the code
+	 * @param code : join code of the room
+	 * @return the room, null if there's no room with the code
+	 */
+	public GameRoom getRoom(String code)
+	{
+		code = normalizeCode(code);
+		return code == null ? null : this.rooms.get(code);
+	}
+
+	/**
+	 * Get amount of room that still have player
+	 * @return amount of room
+	 */
+	public int getRoomCount()
+	{
+		return this.rooms.size();
+	}
+
+	/**
+	 * Get amount of player inside all room, the room is not locked so the
+	 * amount could be changed while counting
+	 * @return amount of player
+	 */
+	public int getPlayerCount()
+	{
+		int count = 0;
+		for (GameRoom room : this.rooms.values())
+		{
+			count += room.getPlayerCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Get the counter of the compressed bytes of all player in this server
+	 * @return the counter
+	 */
+	public CompressionStats getCompressionStats()
+	{
+		return this.compressionStats;
+	}
+
+	/**
+	 * Get the loops running the game of all room
+	 * @return the loops
+	 */
+	public RoomLoopGroup getLoopGroup()
+	{
+		return this.loopGroup;
+	}
+
+	/**
+	 * Get the checker of all connection in this server
+	 * @return the checker
+	 */
+	public HeartbeatSweeper getHeartbeat()
+	{
+		return this.heartbeat;
+	}
+
+	/**
+	 * Stop the game of every room and send finished instruction to all player,
+	 * used when the server is deleted
+	 */
+	public void finishAllRooms()
+	{
+		for (GameRoom room : this.rooms.values())
+		{
+			room.post(RoomCommand.Type.FINISH, null, true);
+		}
+	}
+
+	/**
+	 * Tell the listener that a room is created or removed
+	 * @param name : name of the event
+	 * @param room : the room
+	 */
+	private void fireRoomEvent(String name, GameRoom room)
+	{
+		if (this.roomListener != null)
+		{
+			this.roomListener.propertyChange(new PropertyChangeEvent(this, name, null, room));
+		}
+	}
+
+	/**
+	 * Change the join code to the form used as the key (upper case without space around it)
+	 * @param code : join code sent by the player
+	 * @return the code, null if the code is too long or has character other than letter and digit
+	 */
+	public static String normalizeCode(String code)
+	{
+		if (code == null)
+		{
+			return null;
+		}
+		code = code.trim().toUpperCase(Locale.ROOT);
+		if (code.length() > MAXIMUM_CODE_LENGTH)
+		{
+			return null;
+		}
+		for (int i = 0; i < code.length(); i++)
+		{
+			char character = code.charAt(i);
+			if (!((character >= 'A' && character <= 'Z') || (character >= '0' && character <= '9')))
+			{
+				return null;
+			}
+		}
+		return code;
+	}
+}
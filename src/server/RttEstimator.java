@@ -0,0 +1,189 @@
+package server;
+
+/**
+ * Round trip time of one player, measured from the test byte<br>
+ * Every test byte has sequence number and the time it's sent, in protocol version 2 both
+ * is sent inside the test byte and sent back by the player, in protocol version 1 the
+ * player just send back code 0 so the answer is matched with the oldest test byte
+ * that is not yet answered (the answer always come in the same order)<br>
+ * The smoothed round trip time and the jitter (round trip time variation) is counted
+ * like TCP (RFC 6298), used to decide how long the player could be quiet before disconnected
+ * @author Toshiba
+ *
+ */
+public class RttEstimator {
+
+	// amount of test byte remembered, the answer of the older test byte is ignored
+	private static final int WINDOW = 8;
+
+	// time every test byte is sent, the index is the sequence number % WINDOW
+	private long sentTimes[] = new long[WINDOW];
+
+	// sequence number of the last test byte sent and the last one answered
+	private int lastSent = 0;
+	private int lastAnswered = 0;
+
+	// time since the oldest test byte that is not yet answered, 0 if all is answered
+	private long unansweredSince = 0;
+
+	// smoothed round trip time and its variation (in milliseconds), sampleCount is
+	// amount of answer used, there's no estimation before the first answer
+	private double smoothedRtt = 0;
+	private double rttVariation = 0;
+	private long lastRtt = 0;
+	private int sampleCount = 0;
+
+	/**
+	 * Remember the test byte that is going to be sent
+	 * @param now : current time (milliseconds since epoch)
+	 * @return sequence number of the test byte
+	 */
+	public synchronized int pingSent(long now)
+	{
+		this.lastSent += 1;
+		this.sentTimes[this.lastSent % WINDOW] = now;
+		if (this.unansweredSince == 0)
+		{
+			this.unansweredSince = now;
+		}
+		return this.lastSent;
+	}
+
+	/**
+	 * Count the answer of the test byte sent in protocol version 2, the answer with
+	 * wrong time or the answer of the test byte that is already forgotten is ignored
+	 * @param sequence : sequence number sent back by the player
+	 * @param sentTime : time sent back by the player
+	 * @param now : current time (milliseconds since epoch)
+	 * @return true if the answer is used
+	 */
+	public synchronized boolean pongReceived(int sequence, long sentTime, long now)
+	{
+		if (sequence <= this.lastAnswered || sequence > this.lastSent || sequence <= this.lastSent - WINDOW
+				|| this.sentTimes[sequence % WINDOW] != sentTime)
+		{
+			return false;
+		}
+		this.answered(sequence, now);
+		return true;
+	}
+
+	/**
+	 * Count the answer of the test byte sent in protocol version 1, matched with
+	 * the oldest test byte that is not yet answered
+	 * @param now : current time (milliseconds since epoch)
+	 * @return true if the answer is used
+	 */
+	public synchronized boolean pongReceived(long now)
+	{
+		if (this.lastAnswered >= this.lastSent)
+		{
+			return false;
+		}
+
+		// the test byte that is already forgotten is counted as answered without sample
+		int sequence = Math.max(this.lastAnswered + 1, this.lastSent - WINDOW + 1);
+		this.answered(sequence, now);
+		return true;
+	}
+
+	/**
+	 * Add the round trip time of the answered test byte to the estimation
+	 * @param sequence : sequence number of the answered test byte
+	 * @param now : current time (milliseconds since epoch)
+	 */
+	private void answered(int sequence, long now)
+	{
+		long rtt = Math.max(0, now - this.sentTimes[sequence % WINDOW]);
+		this.lastAnswered = sequence;
+		this.unansweredSince = sequence == this.lastSent ? 0 : this.sentTimes[(sequence + 1) % WINDOW];
+
+		this.lastRtt = rtt;
+		if (this.sampleCount == 0)
+		{
+			this.smoothedRtt = rtt;
+			this.rttVariation = rtt / 2.0;
+		}
+		else
+		{
+			this.rttVariation = 0.75 * this.rttVariation + 0.25 * Math.abs(this.smoothedRtt - rtt);
+			this.smoothedRtt = 0.875 * this.smoothedRtt + 0.125 * rtt;
+		}
+		this.sampleCount += 1;
+	}
+
+	/**
+	 * Check if there's already any answer used for the estimation
+	 * @return true if the round trip time is known
+	 */
+	public synchronized boolean hasSample()
+	{
+		return this.sampleCount > 0;
+	}
+
+	/**
+	 * Get the smoothed round trip time
+	 * @return round trip time in milliseconds, -1 if not yet known
+	 */
+	public synchronized int getSmoothedRtt()
+	{
+		return this.sampleCount > 0 ? (int) Math.round(this.smoothedRtt) : -1;
+	}
+
+	/**
+	 * Get the jitter (smoothed variation of the round trip time)
+	 * @return jitter in milliseconds, -1 if not yet known
+	 */
+	public synchronized int getJitter()
+	{
+		return this.sampleCount > 0 ? (int) Math.round(this.rttVariation) : -1;
+	}
+
+	/**
+	 * Get the round trip time of the last answered test byte
+	 * @return round trip time in milliseconds, -1 if not yet known
+	 */
+	public synchronized long getLastRtt()
+	{
+		return this.sampleCount > 0 ? this.lastRtt : -1;
+	}
+
+	/**
+	 * Get how long the answer of the test byte could be waited before it's counted as late
+	 * (smoothed round trip time + 4 * jitter)
+	 * @return time in milliseconds, -1 if not yet known
+	 */
+	public synchronized long getRetransmissionTimeout()
+	{
+		return this.sampleCount > 0 ? Math.round(this.smoothedRtt + 4 * this.rttVariation) : -1;
+	}
+
+	/**
+	 * Get the time the last test byte is sent
+	 * @return time in milliseconds since epoch, 0 if there's no test byte sent yet
+	 */
+	public synchronized long getLastPingTime()
+	{
+		return this.lastSent > 0 ? this.sentTimes[this.lastSent % WINDOW] : 0;
+	}
+
+	/**
+	 * Get how long the oldest test byte that is not yet answered has been waited
+	 * @param now : current time (milliseconds since epoch)
+	 * @return time in milliseconds, 0 if all test byte is answered
+	 */
+	public synchronized long getUnansweredTime(long now)
+	{
+		return this.unansweredSince == 0 ? 0 : now - this.unansweredSince;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		if (this.sampleCount == 0)
+		{
+			return "rtt unknown";
+		}
+		return String.format("rtt %d ms, jitter %d ms", Math.round(this.smoothedRtt), Math.round(this.rttVariation));
+	}
+}
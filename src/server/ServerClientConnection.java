@@ -0,0 +1,1224 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import Utility.CompressionStats;
+import Utility.UtilityProtocol;
+
+/**
+ * Base class for every connection of player<br>
+ * Containing the data of the player and the game logic for every instruction
+ * sent by the player, the way the bytes are read from and written to the network
+ * is decided by the subclass (thread per connection or NIO event loop)
+ * @author Toshiba
+ *
+ */
+public abstract class ServerClientConnection {
+
+	// list of other connection inside the same room, used to send data between player,
+	// null until the player join a room
+	protected PlayerRegistry clientThreads;
+
+	// registry of the room inside the server and the room of the player, the player join
+	// a room with JOIN_ROOM or join the default room when sending their name without it,
+	// denied is true after the player can't join the room (the connection will be closed)
+	//
+	// every instruction that change the game is sent to the mailbox of the room as RoomCommand
+	// and applied by the loop of the room (see RoomLoop), the game variable of this player
+	// (word, index, drawing, etc) is only used by that loop,
+	// inRoom is true after the room add this player and false after removed
+	protected RoomRegistry roomRegistry;
+	protected volatile GameRoom room = null;
+	protected volatile boolean denied = false;
+	private boolean inRoom = false;
+
+	// output for send data to player
+	// out (DataOutputStream) must always synchronized when used
+	// to send data, this is to prevent race that will
+	// make data send to player become broken (not ordered properly)
+	//
+	// out doesn't write to the network directly, every instruction is assembled
+	// inside frameBuffer (reused for every instruction) then sent as one whole frame
+	// by endFrame, so one instruction is one write instead of one write for every
+	// byte or integer
+	//
+	// instruction that is the same for every player is not assembled here but
+	// encoded once as BroadcastFrame and sent with sendFrame, just the instruction
+	// that different for every player (word, hint, time) use out
+	protected FrameBuffer frameBuffer = new FrameBuffer();
+	protected DataOutputStream out = new DataOutputStream(this.frameBuffer);
+	
+	// frames waiting to be written to the network by the writer of the connection,
+	// sending data to player just put the frame here and never wait the network
+	protected OutboundQueue outboundQueue = new OutboundQueue();
+
+	// protocol version used by the player (see UtilityProtocol), version 2 is used
+	// after the player send HELLO_V2 as their first byte, no test byte is sent before
+	// the first byte arrived so the player know the version from the byte after -1
+	protected volatile int protocolVersion = UtilityProtocol.VERSION_1;
+	protected volatile boolean firstByteReceived = false;
+
+	// compression is used if the player ask it with HELLO_V2_DEFLATE and it's not disabled by
+	// system property skribbl.server.compression=false, the bytes are counted for this player,
+	// and by the counter of the room while the player is inside the room (the whole server before)
+	public static final String PROPERTY_COMPRESSION = "skribbl.server.compression";
+	private static final boolean compressionEnabled = Boolean.parseBoolean(System.getProperty(PROPERTY_COMPRESSION, "true"));
+	protected CompressionStats compressionStats;
+
+	// Name of the player
+	protected String playerName = null;
+
+	// index of connection inside clientThreads, changed every time a player before
+	// this player left, just used for the player with protocol version 1
+	protected int currentIndex = 0;
+
+	// ID of the player inside the room, given when joining the room and never changed
+	// or given to other player, used for the player with protocol version 2
+	protected int playerId = -1;
+
+	// utility variable to check some attribute faster by not sending
+	// request data to main server thread, but by server main thread
+	// sending important data to fasten the process
+	protected String word; // word to be guessed by player
+	protected int answered = 0; // count how many player already answered right answer in this turn
+	protected boolean alreadyAnswered = false; // indicate if the player has already answered the question or not
+	protected boolean currentlyDrawing = false; // indicate if the player is the one who currently draw the image
+
+	// stroke of this player when they are drawing, the point is sent to other player as
+	// difference from the last point and the style is just sent at the start of stroke,
+	// strokeInputPoint is the last point sent by the player (to read their difference)
+	protected StrokeFrameBuilder stroke = new StrokeFrameBuilder();
+	protected int strokeInputPoint[] = {0, 0};
+
+	// indicate if hint already sent to player, player could get maximum two hints but not
+	// always, to get two hints the length of word must more than 5 characters and
+	// the random must not same with the first hint, player will always get at least 1 hints
+	protected int alreadySendHint[] = {-1, -1};
+
+	// used to count time (like timer)
+	// lastClientRespon used to tell when last time client send data to server
+	// (updated by the reader for every instruction)
+	// lastSendMessage used to tell when last time server send any frame to the client
+	// both is checked by HeartbeatSweeper of the server to send test byte
+	// and to kick the player who didn't respond
+	protected volatile long lastClientRespon = System.currentTimeMillis();
+	protected volatile long lastSendMessage = System.currentTimeMillis();
+
+	// round trip time of the test byte, used by HeartbeatSweeper to decide
+	// the timeout of this player and sent to other player by the room
+	protected RttEstimator rttEstimator = new RttEstimator();
+
+	/**
+	 * Constructor for the class, the subclass must prepare the connection
+	 * and then call handshake to accept the player
+	 * @param roomRegistry : registry of the room inside the server
+	 */
+	protected ServerClientConnection(RoomRegistry roomRegistry)
+	{
+		this.roomRegistry = roomRegistry;
+		this.compressionStats = new CompressionStats(roomRegistry.getCompressionStats());
+	}
+
+	/**
+	 * Accept the player to the server, the player is not yet inside any room until
+	 * they send JOIN_ROOM or their name, the player will be denied at that time
+	 * if the game inside the room is already started
+	 * @throws IOException if can't send the handshake byte
+	 */
+	protected void handshake() throws IOException
+	{
+		// the connection is checked by the heartbeat of the server until it's closed
+		this.roomRegistry.getHeartbeat().register(this);
+
+		synchronized (this.out)
+		{
+			// must not forget to synchronized out
+			// sending data to user the connection is ready and request for player data
+			this.out.writeByte(-1);
+			this.endFrame();
+		}
+	}
+
+	/**
+	 * Add the player to the room with the code, the player is added by the loop of the room,
+	 * if the code is not valid or the game inside the room is already started the player
+	 * will get rejection code and the connection will be closed
+	 * @param code : join code of the room
+	 * @return false if the code is not valid or the player already denied
+	 */
+	protected boolean joinRoom(String code)
+	{
+		if (this.room != null)
+		{
+			// the player can't move to other room
+			return true;
+		}
+		if (this.denied)
+		{
+			return false;
+		}
+
+		GameRoom room = this.roomRegistry.join(code, this);
+		if (room == null)
+		{
+			this.deny();
+			return false;
+		}
+		this.room = room;
+		return true;
+	}
+
+	/**
+	 * Send rejection code to the player and close the connection, all instruction
+	 * after this is ignored, could be called from any thread
+	 */
+	protected void deny()
+	{
+		synchronized (this.out)
+		{
+			if (this.denied)
+			{
+				return;
+			}
+			this.denied = true;
+			try
+			{
+				// sending instruction to player they can't join the lobby
+				this.out.writeByte(-2);
+				this.endFrame();
+			}
+			catch (IOException e)
+			{
+
+			}
+			this.closeConnection();
+		}
+	}
+
+	/**
+	 * Called by the room when the player is added to the room
+	 * @param clientThreads : list contain all player connection inside the room
+	 * @param roomCompressionStats : counter of the compressed bytes of the room
+	 */
+	void enterRoom(PlayerRegistry clientThreads, CompressionStats roomCompressionStats)
+	{
+		this.clientThreads = clientThreads;
+		this.compressionStats.setParent(roomCompressionStats);
+		this.inRoom = true;
+	}
+
+	/**
+	 * Called by the room when the player is removed from the room
+	 * (left or the game is finished), the command after this is ignored
+	 */
+	void leaveRoom()
+	{
+		this.inRoom = false;
+		this.compressionStats.setParent(this.roomRegistry.getCompressionStats());
+	}
+
+	/**
+	 * Check if the player is inside the room, called by the room
+	 * @return true if the player is already added and not yet removed
+	 */
+	boolean isInRoom()
+	{
+		return this.inRoom;
+	}
+
+	/**
+	 * Send the command to the mailbox of the room, nothing happen if the player
+	 * is not yet inside any room
+	 * @param type : kind of the command
+	 */
+	protected void postToRoom(RoomCommand.Type type)
+	{
+		this.postToRoom(type, null, null, null);
+	}
+
+	/**
+	 * Send the command with data to the mailbox of the room, nothing happen if the player
+	 * is not yet inside any room
+	 * @param type : kind of the command
+	 * @param text : name or chat of the player, null if not used
+	 * @param data : drawing point, null if not used
+	 * @param records : copy of the stroke records, null if not used
+	 */
+	protected void postToRoom(RoomCommand.Type type, String text, int data[], byte records[])
+	{
+		GameRoom room = this.room;
+		if (room == null || room.post(type, this, text, data, records, this.canWaitForRoom()))
+		{
+			return;
+		}
+
+		// the mailbox is full and this thread can't wait (event loop), the player
+		// who left is still removed, other player sending too much is disconnected
+		if (type == RoomCommand.Type.LEAVE)
+		{
+			room.removeLater(this);
+		}
+		else
+		{
+			this.forceCloseConnection();
+		}
+	}
+
+	/**
+	 * Check if the current thread could wait when the mailbox of the room is full,
+	 * the event loop (NIO) and the room loop must not wait, the other player
+	 * served by the same loop will stop too
+	 * @return true if the current thread could wait
+	 */
+	boolean canWaitForRoom()
+	{
+		return this.canBlockWhenQueueFull() && !RoomLoop.inRoomLoop();
+	}
+
+	/**
+	 * Get the room of the player
+	 * @return the room, null if the player not yet join a room
+	 */
+	public GameRoom getRoom()
+	{
+		return this.room;
+	}
+
+	/**
+	 * Ask the room to send the remaining time of the turn to this player,
+	 * nothing happen if the player not yet join a room or use protocol version 2
+	 * (they get TURN_DEADLINE once every turn and count down by themselves)
+	 */
+	protected void requestTimeCondition()
+	{
+		if (this.protocolVersion == UtilityProtocol.VERSION_1)
+		{
+			this.postToRoom(RoomCommand.Type.TIME);
+		}
+	}
+
+	/**
+	 * Send the instruction assembled inside frameBuffer to the player as one frame,
+	 * must be called when still synchronized out
+	 * @throws IOException if the socket is already closed
+	 */
+	protected void endFrame() throws IOException
+	{
+		try
+		{
+			this.writeFrame(this.frameBuffer.array(), this.frameBuffer.size());
+		}
+		finally
+		{
+			this.frameBuffer.reset();
+		}
+	}
+
+	/**
+	 * Put one whole frame to the outbound queue, if the queue overflowed
+	 * the player will be disconnected
+	 * @param frame : array containing the frame
+	 * @param length : length of the frame
+	 * @throws IOException if the connection is already closed
+	 */
+	protected void writeFrame(byte frame[], int length) throws IOException
+	{
+		// the frame is copied because frameBuffer is reused, stroke (code 10) is
+		// the only frame that could be dropped because losing one point of the line
+		// doesn't break the game
+		this.queueFrame(UtilityProtocol.toFrame(frame, length, this.protocolVersion), length > 0 && frame[0] == 10);
+	}
+
+	/**
+	 * Send frame that already encoded to the player, the array of the frame is put
+	 * to the outbound queue without copying it (shared with other player)
+	 * @param frame : the frame to be sent
+	 * @throws IOException if the connection is already closed
+	 */
+	public void sendFrame(BroadcastFrame frame) throws IOException
+	{
+		synchronized (this.out)
+		{
+			// synchronized with out so the frame is not put between
+			// the frame assembled inside frameBuffer
+			this.queueFrame(frame.getBytes(this.protocolVersion), frame.isDroppable(this.protocolVersion));
+		}
+	}
+
+	/**
+	 * Put the frame to the outbound queue, if the queue overflowed
+	 * the player will be disconnected
+	 * @param frame : the frame, must not changed after this
+	 * @param droppable : true if the frame could be dropped when the queue is full
+	 * @throws IOException if the connection is already closed or the queue overflowed
+	 */
+	private void queueFrame(byte frame[], boolean droppable) throws IOException
+	{
+		// the room loop must never wait for one slow player, the other room
+		// inside the same loop will stop too
+		if (!this.outboundQueue.offer(frame, droppable, this.canBlockWhenQueueFull() && !RoomLoop.inRoomLoop()))
+		{
+			this.forceCloseConnection();
+			throw new IOException("Outbound queue overflow");
+		}
+		this.lastSendMessage = System.currentTimeMillis();
+		this.frameQueued();
+	}
+
+	/**
+	 * Called after a frame is put to the outbound queue, the subclass could
+	 * wake up its writer here
+	 */
+	protected void frameQueued()
+	{
+
+	}
+
+	/**
+	 * Check if the current thread could wait when the outbound queue is full
+	 * @return true if the current thread could wait
+	 */
+	protected boolean canBlockWhenQueueFull()
+	{
+		return true;
+	}
+
+	/**
+	 * Get amount of frame waiting to be written to this player
+	 * @return depth of the outbound queue
+	 */
+	public int getOutboundQueueDepth()
+	{
+		return this.outboundQueue.getDepth();
+	}
+
+	/**
+	 * Get maximum amount of frame ever waiting to be written to this player
+	 * @return maximum depth of the outbound queue
+	 */
+	public int getOutboundQueueMaxDepth()
+	{
+		return this.outboundQueue.getMaxDepth();
+	}
+
+	/**
+	 * Get amount of frame dropped because the outbound queue of this player is full
+	 * @return amount of frame dropped
+	 */
+	public long getDroppedFrames()
+	{
+		return this.outboundQueue.getDroppedFrames();
+	}
+
+	/**
+	 * Close the connection after all data already written to the output is sent
+	 */
+	protected abstract void closeConnection();
+
+	/**
+	 * Force close this connection by closing the socket because
+	 * the server was shut down
+	 */
+	public abstract void forceCloseConnection();
+
+	/**
+	 * Check if the connection is already closed
+	 * @return true if the connection is closed
+	 */
+	public abstract boolean isClosed();
+
+	/**
+	 * Get the last time the player send any instruction
+	 * @return time in milliseconds
+	 */
+	public long getLastReceived()
+	{
+		return this.lastClientRespon;
+	}
+
+	/**
+	 * Get the last time any frame is sent to the player
+	 * @return time in milliseconds
+	 */
+	public long getLastSent()
+	{
+		return this.lastSendMessage;
+	}
+
+	/**
+	 * Get the round trip time of this player
+	 * @return the estimation of the round trip time
+	 */
+	public RttEstimator getRttEstimator()
+	{
+		return this.rttEstimator;
+	}
+
+	/**
+	 * Check if the player could get the test byte, the first instruction after -1 must be
+	 * the answer of the protocol version and the denied player doesn't need it
+	 * @return true if the test byte could be sent
+	 */
+	public boolean isReadyForTestByte()
+	{
+		return this.firstByteReceived && !this.denied;
+	}
+
+	/**
+	 * Send the test byte to the player, called by HeartbeatSweeper, the error is
+	 * ignored because the reader of the connection will get it too
+	 */
+	public void sendHeartbeat()
+	{
+		try
+		{
+			this.sendTestByte();
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Handle HELLO_V2 or HELLO_V2_DEFLATE sent as the first byte, the player ask to use
+	 * protocol version 2, the answer is still version 1 but all instruction after it is version 2
+	 * (and compressed if the answer is HELLO_V2_DEFLATE)
+	 * @param compressionAsked : true if the player ask to use compression too
+	 * @throws IOException if the socket is already closed
+	 */
+	protected void onHello(boolean compressionAsked) throws IOException
+	{
+		synchronized (this.out)
+		{
+			if (compressionAsked && this.isCompressionSupported())
+			{
+				this.out.writeByte(UtilityProtocol.HELLO_V2_DEFLATE);
+				this.endFrame();
+
+				// the writer compress every frame after the answer, and every byte
+				// sent by the player after the first byte is compressed too
+				this.queueFrame(OutboundQueue.START_COMPRESSION, false);
+				this.startInputCompression();
+			}
+			else
+			{
+				this.out.writeByte(UtilityProtocol.HELLO_V2);
+				this.endFrame();
+			}
+			this.protocolVersion = UtilityProtocol.VERSION_2;
+		}
+	}
+
+	/**
+	 * Check if this connection could be compressed when the player ask it
+	 * @return true if the compression is not disabled by system property skribbl.server.compression
+	 */
+	protected boolean isCompressionSupported()
+	{
+		return compressionEnabled;
+	}
+
+	/**
+	 * Decompress all input after the first byte, called by the thread reading the input
+	 * of this player when the player use compression
+	 * @throws IOException if failed to prepare the decompression
+	 */
+	protected abstract void startInputCompression() throws IOException;
+
+	/**
+	 * Handle one instruction of protocol version 2, the whole data of the instruction
+	 * is already read, disconnect instruction (code 2) must be handled by the subclass
+	 * @param code : code of the instruction
+	 * @param data : data of the instruction
+	 * @throws IOException if the data is not valid or failed to send data to player
+	 */
+	protected void onFrame(byte code, DataInputStream data) throws IOException
+	{
+		if (code == 0)
+		{
+			if (data.available() > 0)
+			{
+				// the test byte is sent back with its time and sequence number
+				long sentTime = data.readLong();
+				int sequence = UtilityProtocol.readVarInt(data);
+				this.rttEstimator.pongReceived(sequence, sentTime, System.currentTimeMillis());
+			}
+			else
+			{
+				this.onTestByte();
+			}
+		}
+		else if (code == 1)
+		{
+			this.onPlayerName(UtilityProtocol.readString(data, UtilityProtocol.VERSION_2));
+		}
+		else if (code == 3)
+		{
+			this.onLobbyChat(UtilityProtocol.readString(data, UtilityProtocol.VERSION_2));
+		}
+		else if (code == 4)
+		{
+			this.onStartGame();
+		}
+		else if (code == 10)
+		{
+			int texture[] = {data.readInt(), data.readInt(), data.readInt(), data.readInt(), data.readInt(), data.readInt()};
+			this.onImageTexture(texture);
+		}
+		else if (code == 11)
+		{
+			this.onStopDrawing();
+		}
+		else if (code == 12)
+		{
+			this.onGameChat(UtilityProtocol.readString(data, UtilityProtocol.VERSION_2));
+		}
+		else if (code == UtilityProtocol.STROKE)
+		{
+			this.onStroke(data);
+		}
+		else if (code == UtilityProtocol.JOIN_ROOM)
+		{
+			this.joinRoom(UtilityProtocol.readString(data, UtilityProtocol.VERSION_2));
+		}
+	}
+
+	/**
+	 * Handle code 0 without data, player responded to the oldest test byte
+	 */
+	protected void onTestByte()
+	{
+		// every instruction already update lastClientRespon,
+		// the test byte is just used for the round trip time
+		this.rttEstimator.pongReceived(System.currentTimeMillis());
+	}
+
+	/**
+	 * Handle code 1, new player enter the lobby and sending their name
+	 * @param playerName : name of the player
+	 * @throws IOException if the socket is already closed
+	 */
+	protected void onPlayerName(String playerName) throws IOException
+	{
+		// player who doesn't send JOIN_ROOM before their name join the default room
+		if (!this.joinRoom(RoomRegistry.DEFAULT_ROOM))
+		{
+			return;
+		}
+
+		// the name is given to the other player by the room,
+		// so the new player is not sent between other instruction of the room
+		this.postToRoom(RoomCommand.Type.NAME, playerName, null, null);
+	}
+
+	/**
+	 * Remove this player from the game, used when the player send disconnect
+	 * instruction (code 2) or the connection is broken
+	 */
+	protected void removeFromGame()
+	{
+		// the room send the removal to all other player, player who is
+		// not yet inside any room is ignored, no one need to know
+		this.postToRoom(RoomCommand.Type.LEAVE);
+	}
+
+	/**
+	 * Handle code 3, player send a chat message from lobby view
+	 * @param chat : chat sent by the player
+	 * @throws IOException if the socket is already closed
+	 */
+	protected void onLobbyChat(String chat) throws IOException
+	{
+		// send the chat to all player
+		this.postToRoom(RoomCommand.Type.LOBBY_CHAT, chat, null, null);
+	}
+
+	/**
+	 * Handle code 4, the player pressed the start button
+	 */
+	protected void onStartGame()
+	{
+		// the player send the start instruction, this will tell the room to send start
+		// instruction to all player, so they will go to game view, shuffle player's turn
+		// and start the game
+		this.postToRoom(RoomCommand.Type.START);
+	}
+
+	/**
+	 * Handle code 10, player send drawing data
+	 * @param data : thickness, red, green, blue, x coordinate, y coordinate
+	 */
+	protected void onImageTexture(int data[])
+	{
+		this.postToRoom(RoomCommand.Type.IMAGE_TEXTURE, null, data, null);
+	}
+
+	/**
+	 * Send the drawing point to all player if this player is the one who is drawing,
+	 * called by the room
+	 * @param data : thickness, red, green, blue, x coordinate, y coordinate
+	 */
+	void drawImageTexture(int data[])
+	{
+		// sending drawing data to all player (including the one who draw the image),
+		// the style is only used by the first point of the stroke
+		if (this.currentlyDrawing)
+		{
+			this.stroke.begin();
+			if (this.stroke.isStarted())
+			{
+				this.stroke.strokePoint(data[4], data[5]);
+			}
+			else
+			{
+				this.stroke.strokeStart(data[0], data[1], data[2], data[3], data[4], data[5]);
+			}
+			BroadcastFrame.broadcast(this.clientThreads, this.stroke.build());
+		}
+	}
+
+	/**
+	 * Handle STROKE instruction (protocol version 2), stroke records sent by the player
+	 * @param data : data of the instruction
+	 * @throws IOException if the data is not valid
+	 */
+	protected void onStroke(DataInputStream data) throws IOException
+	{
+		// the data is read by the room, so it must be copied
+		// before the next instruction is read
+		this.postToRoom(RoomCommand.Type.STROKE, null, null, data.readAllBytes());
+	}
+
+	/**
+	 * Read the stroke records and send them to all player, called by the room
+	 * @param records : data of the STROKE instruction
+	 */
+	void drawStroke(byte records[])
+	{
+		try
+		{
+			DataInputStream data = new DataInputStream(new ByteArrayInputStream(records));
+			if (this.currentlyDrawing)
+			{
+				// sending all the records to all player (including the one who draw the image)
+				this.stroke.begin();
+				UtilityProtocol.readStroke(data, this.strokeInputPoint, this.stroke);
+				BroadcastFrame frame = this.stroke.build();
+				if (frame != null)
+				{
+					BroadcastFrame.broadcast(this.clientThreads, frame);
+				}
+			}
+			else
+			{
+				// player who is not drawing could only stop the line (same as code 11)
+				UtilityProtocol.readStroke(data, this.strokeInputPoint, new UtilityProtocol.StrokeHandler() {
+
+					@Override
+					public void strokeEnd()
+					{
+						room.stopDrawing();
+					}
+				});
+			}
+		}
+		catch (IOException e)
+		{
+			// the records is not valid, same as other broken instruction
+			this.forceCloseConnection();
+		}
+	}
+
+	/**
+	 * Handle code 11, player stop drawing
+	 */
+	protected void onStopDrawing()
+	{
+		this.postToRoom(RoomCommand.Type.STOP_DRAWING);
+	}
+
+	/**
+	 * Forget the stroke of this player, called by the room after stop drawing is sent
+	 */
+	void resetStroke()
+	{
+		this.stroke.reset();
+	}
+
+	/**
+	 * Handle code 12, player send chat from game view, the chat could be the answer
+	 * @param chat : chat sent by the player
+	 * @throws IOException if the socket is already closed
+	 */
+	protected void onGameChat(String chat) throws IOException
+	{
+		// the room check if the chat is the answer
+		this.postToRoom(RoomCommand.Type.GUESS, chat, null, null);
+	}
+
+	/**
+	 * Used to send test byte, test byte just consist one byte with value 0
+	 * that need to answered by the user to tell the server they are still active
+	 * @throws IOException if the socket is already closed
+	 */
+	public void sendTestByte() throws IOException
+	{
+		if (this.protocolVersion == UtilityProtocol.VERSION_1)
+		{
+			// the answer is matched with the test byte by the order
+			synchronized (this.out)
+			{
+				this.rttEstimator.pingSent(System.currentTimeMillis());
+				this.sendFrame(BroadcastFrame.TEST_BYTE);
+			}
+			return;
+		}
+
+		synchronized (this.out)
+		{
+			// in protocol version 2 the test byte contain the server time, used by
+			// the player to count down the turn with the server clock, and the
+			// sequence number, both is sent back to count the round trip time
+			long now = System.currentTimeMillis();
+			int sequence = this.rttEstimator.pingSent(now);
+			this.out.writeByte(0);
+			this.out.writeLong(now);
+			UtilityProtocol.writeVarInt(this.out, sequence);
+			this.endFrame();
+		}
+	}
+
+	/**
+	 * Used to get the player name
+	 * @return name of the player
+	 */
+	public String getPlayerName()
+	{
+		return this.playerName;
+	}
+
+	/**
+	 * Set the name of the player, called by the room
+	 * @param playerName : name of the player
+	 */
+	void setPlayerName(String playerName)
+	{
+		this.playerName = playerName;
+	}
+
+	/**
+	 * Used to change index of the connection
+	 * connection index is the same as player index which mean change the index of the player,
+	 * but it is not likely (will be handled by client program, not the server)
+	 * @param index : the new index
+	 */
+	public void setIndex(int index)
+	{
+		this.currentIndex = index;
+	}
+
+	/**
+	 * Used to get index of the connection (connection index is the same as player index)
+	 * @return index of the connection
+	 */
+	public int getIndex()
+	{
+		return this.currentIndex;
+	}
+
+	/**
+	 * Used to give the ID of the player inside the room, called by the room when the player joined
+	 * @param playerId : ID of the player
+	 */
+	public void setPlayerId(int playerId)
+	{
+		this.playerId = playerId;
+	}
+
+	/**
+	 * Used to get the ID of the player inside the room
+	 * @return ID of the player, -1 if not yet inside any room
+	 */
+	public int getPlayerId()
+	{
+		return this.playerId;
+	}
+
+	/**
+	 * Send stream data of new player to all player
+	 * @param player : connection of the new player
+	 * @param newPlayer : name of the new player
+	 * @throws IOException if the socket is already closed
+	 */
+	public void sendNewPlayerToClient(ServerClientConnection player, String newPlayer) throws IOException
+	{
+		this.sendFrame(BroadcastFrame.newPlayer(player, newPlayer));
+	}
+
+	/**
+	 * Send stream byte code of player who left the game
+	 * @param player : connection of the player
+	 * @throws IOException if the socket is already closed
+	 */
+	public void sendRemovalPlayer(ServerClientConnection player) throws IOException
+	{
+		this.sendFrame(BroadcastFrame.removalPlayer(player));
+	}
+
+	/**
+	 * Send stream byte code of chat from player
+	 * @param player : connection of the player who send the chat
+	 * @param chat : chat sent by the player
+	 * @throws IOException if the output stream or socket is already closed
+	 */
+	public void sendChatToPlayer(ServerClientConnection player, String chat) throws IOException
+	{
+		this.sendFrame(BroadcastFrame.chat(player, chat));
+	}
+
+	/**
+	 * Send start instruction the the player (client)
+	 * @throws IOException if the output stream or socket is already closed
+	 */
+	public void sendStartInstruction() throws IOException
+	{
+		this.sendFrame(BroadcastFrame.START_INSTRUCTION);
+	}
+
+	/**
+	 * Send object word to the player, if the player is the one who drawing
+	 * the whole object name will be sent, but if not, just question marks that
+	 * will be sent
+	 * @param word : object word to be sent
+	 */
+	public void sendWord(String word)
+	{
+
+		// save the word for faster processing and reset the hint data
+
+		this.word = word;
+
+		for (int i = 0; i < this.alreadySendHint.length ; i++)
+		{
+			this.alreadySendHint[i] = -1;
+		}
+
+		try
+		{
+			if (this.currentlyDrawing || this.alreadyAnswered)
+			{
+				// sending the whole word if the player is the one who is drawing
+				// or if they already answered right
+				synchronized (this.out)
+				{
+					this.out.writeByte(5);
+					UtilityProtocol.writeString(this.out, word, this.protocolVersion);
+					this.endFrame();
+				}
+			}
+			else
+			{
+
+				// sending question mark if player is not drawing and still note
+				// answered right
+				StringBuffer questionMarks = new StringBuffer();
+				for(int i = 0; i < word.length(); i++)
+				{
+					questionMarks.append('?');
+				}
+
+				synchronized (this.out)
+				{
+					this.out.writeByte(5);
+					UtilityProtocol.writeString(this.out, questionMarks.toString(), this.protocolVersion);
+					this.endFrame();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Sending hint of object word if the player still not answered right and not the one
+	 * who is drawing
+	 * @param index : index generated by main thread to tell which character will be showed to player
+	 * @param hint : hint data to save hint character and indicate if the hint already sent to player
+	 */
+	public void sendHint(int index, int hint)
+	{
+		if (this.alreadyAnswered == false && this.currentlyDrawing == false && this.alreadySendHint[hint] == -1)
+		{
+			// player must not yet answered right and not the one who is drawing and
+			// the hint not yet send to the player
+
+			// save the character hint
+			this.alreadySendHint[hint] = index;
+
+			try
+			{
+				synchronized (this.out)
+				{
+					// creating the question marks string then change the hint character to
+					// the right character, then sent the hint string to player
+
+					StringBuffer hintStringBuffer = new StringBuffer();
+
+					for(int i = 0; i < this.word.length(); i++)
+					{
+						hintStringBuffer.append('?');
+					}
+
+					for (int i = 0; i <= hint; i++)
+					{
+						hintStringBuffer.setCharAt(
+								this.alreadySendHint[i],
+								this.word.charAt(this.alreadySendHint[i])
+						);
+					}
+
+					String hintString = hintStringBuffer.toString();
+
+
+					this.out.writeByte(5);
+					UtilityProtocol.writeString(this.out, hintString, this.protocolVersion);
+					this.endFrame();
+				}
+			}
+			catch (IOException e)
+			{
+
+			}
+		}
+	}
+
+	/**
+	 * Send time remaining to the player, this will be sent every 0.5 seconds together with test byte
+	 * @param time : remaining time in seconds
+	 */
+	public void sendTimeCondition(int time)
+	{
+		try
+		{
+			synchronized (this.out)
+			{
+				// code 6 for remaining time code
+				this.out.writeByte(6);
+				this.out.writeInt(time);
+				this.endFrame();
+			}
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Send the frame that only exist in protocol version 2 (TURN_DEADLINE, PLAYER_LATENCY),
+	 * player with protocol version 1 doesn't get it (they still ask the remaining time
+	 * every 0.5 seconds)
+	 * @param frame : the frame (the same for all player)
+	 */
+	public void sendVersion2Frame(BroadcastFrame frame)
+	{
+		if (this.protocolVersion == UtilityProtocol.VERSION_2)
+		{
+			try
+			{
+				this.sendFrame(frame);
+			}
+			catch (IOException e)
+			{
+
+			}
+		}
+	}
+
+	/**
+	 * Give additional score to player who answered right or to the one who is drawing the image
+	 * if there's someone answered right
+	 * @param player : connection of the player who will get additional score
+	 * @param artist : true if the player who will get additional score is the one who is drawing the image
+	 */
+	public void sendScore(ServerClientConnection player, boolean artist)
+	{
+		try
+		{
+			if (artist)
+			{
+				// sending additional 8 score to player who draw the image
+				this.sendFrame(BroadcastFrame.score(player, 8));
+			}
+			else
+			{
+				// sending additional score to player who answered right
+				// score calculation f(x) = (amount of player - how many answered right) * 4 + 16
+				this.sendFrame(BroadcastFrame.score(player, (this.clientThreads.size() - this.answered) * 4 + 16));
+			}
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Send instruction reset drawing to the player to reset the image data
+	 */
+	public void sendResetDrawing()
+	{
+		try
+		{
+			this.sendFrame(BroadcastFrame.RESET_DRAWING);
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Send player who in this turn is the one who draw the image
+	 * @param player : connection of the player
+	 */
+	public void sendTurn(ServerClientConnection player)
+	{
+		try
+		{
+			this.sendFrame(BroadcastFrame.turn(player));
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Send image data drawn by the player who is taking turn to draw
+	 * @param data : array of integer consisting data of the image (thickness, color, and line coordinate)
+	 */
+	public void sendImageTexture(int data[])
+	{
+		try
+		{
+			this.sendFrame(BroadcastFrame.imageTexture(data));
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Send signal to all player to tell them the player who is drawing was stop drawing
+	 * the line (relase left mouse click or going out of canvas)
+	 */
+	public void sendStopDrawingInstruction()
+	{
+		try
+		{
+			this.sendFrame(BroadcastFrame.STOP_DRAWING);
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Send broadcast message to player, almost similar to the chat but this
+	 * will send the whole text without any format to be processed by the client
+	 * @param broadcastText : broadcast text to be sent to the player
+	 * @throws IOException if the socket or output stream is already closed
+	 */
+	public void sendBroadcast(String broadcastText) throws IOException
+	{
+		this.sendFrame(BroadcastFrame.broadcastText(broadcastText));
+	}
+
+	/**
+	 * Send signal to player to indicate the game is finished and they must
+	 * going back to the main menu view
+	 */
+	public void sendGameFinishedInstruction()
+	{
+		try
+		{
+			this.sendFrame(BroadcastFrame.GAME_FINISHED);
+		}
+		catch (IOException e)
+		{
+
+		}
+	}
+
+	/**
+	 * Increment amount of player who already answered right
+	 */
+	public void addWhoAnsweredOne()
+	{
+		this.answered  += 1;
+	}
+
+	/**
+	 * Get how many player already answered right
+	 * @return amount of player who already answered right
+	 */
+	public int getHowManyAnswered()
+	{
+		return this.answered;
+	}
+
+	/**
+	 * Set or edit amount of player who already answered right
+	 * @param answered : new amount of player who already answered right
+	 */
+	public void setHowManyAnswered(int answered)
+	{
+		this.answered = answered;
+	}
+
+	/**
+	 * Set the player condition, is he/she/it already answered the question or not
+	 * @param alreadyAnswered : condition of the player
+	 */
+	public void setAlreadyAnswered(boolean alreadyAnswered)
+	{
+		this.alreadyAnswered = alreadyAnswered;
+	}
+
+	/**
+	 * Set the player condition, is he/she/it the one who drawing in this turn or not
+	 * @param currentlyDrawing : condition of the player
+	 */
+	public void setCurrentlyDrawing(boolean currentlyDrawing)
+	{
+		this.currentlyDrawing = currentlyDrawing;
+		this.stroke.reset();
+	}
+
+	/**
+	 * Check if the player already answered the question in this turn
+	 * @return true if the player already answered right
+	 */
+	public boolean isAlreadyAnswered()
+	{
+		return this.alreadyAnswered;
+	}
+
+	/**
+	 * Check if the player is the one who drawing in this turn
+	 * @return true if the player is drawing
+	 */
+	public boolean isCurrentlyDrawing()
+	{
+		return this.currentlyDrawing;
+	}
+}
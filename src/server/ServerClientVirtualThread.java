@@ -0,0 +1,90 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.Socket;
+
+/**
+ * Connection of player served by a virtual thread<br>
+ * The input is read by plain blocking read instead of polling the input stream,
+ * the test byte and the timeout is handled by HeartbeatSweeper of the server
+ * (the socket is closed so the blocking read will throw exception)
+ * @author Toshiba
+ *
+ */
+public class ServerClientVirtualThread extends ServerClientThread {
+
+	// Thread.startVirtualThread, taken by reflection because the project is still
+	// compiled for Java 16, null if the JVM doesn't support virtual thread
+	private static Method startVirtualThread = findStartVirtualThread();
+
+	/**
+	 * Constructor for the class, the connection will be served by virtual thread
+	 * @param socket : socket of connection
+	 * @param roomRegistry : registry of the room inside the server
+	 * @throws IOException if can't create the connection
+	 */
+	public ServerClientVirtualThread(Socket socket, RoomRegistry roomRegistry) throws IOException
+	{
+		super(socket, roomRegistry);
+
+		// the input is read by blocking read, so it can be buffered
+		this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+	}
+
+	/**
+	 * Reader and writer of this connection is run by virtual thread
+	 * @param runnable : runnable for the thread
+	 * @return the started thread
+	 */
+	@Override
+	protected Thread startThread(Runnable runnable)
+	{
+		try
+		{
+			if (startVirtualThread != null)
+			{
+				return (Thread) startVirtualThread.invoke(null, runnable);
+			}
+		}
+		catch (ReflectiveOperationException e)
+		{
+
+		}
+
+		// JVM doesn't support virtual thread, fallback to platform thread
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Nothing to wait, the read after this will block until the data arrived
+	 * or throw exception after the socket is closed
+	 * @param n : amount of byte needed
+	 */
+	@Override
+	public void waitInput(int n)
+	{
+
+	}
+
+	/**
+	 * Find Thread.startVirtualThread method
+	 * @return the method, or null if the JVM doesn't support virtual thread
+	 */
+	private static Method findStartVirtualThread()
+	{
+		try
+		{
+			return Thread.class.getMethod("startVirtualThread", Runnable.class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+}
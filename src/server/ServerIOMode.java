@@ -0,0 +1,51 @@
+package server;
+
+/**
+ * IO model used by the server to handle the connection of every player,
+ * chosen when the server is started
+ * @author Toshiba
+ *
+ */
+public enum ServerIOMode {
+
+	// one thread for every player (ServerClientThread)
+	THREAD,
+
+	// all player handled by small fixed set of selector thread (NioClientConnection)
+	NIO,
+
+	// one virtual thread for every player doing blocking read (ServerClientVirtualThread)
+	VIRTUAL;
+
+	// name of system property to choose the mode for the embedded server
+	public static final String PROPERTY_NAME = "skribbl.server.mode";
+
+	/**
+	 * Get the mode from its name, not case sensitive
+	 * @param name : name of the mode ("thread", "nio" or "virtual")
+	 * @return the mode, THREAD if the name is null or unknown
+	 */
+	public static ServerIOMode parse(String name)
+	{
+		if (name != null)
+		{
+			for (ServerIOMode mode : values())
+			{
+				if (mode.name().equalsIgnoreCase(name.trim()))
+				{
+					return mode;
+				}
+			}
+		}
+		return THREAD;
+	}
+
+	/**
+	 * Get the mode chosen by system property skribbl.server.mode
+	 * @return the mode, THREAD if the property is not set
+	 */
+	public static ServerIOMode fromSystemProperty()
+	{
+		return parse(System.getProperty(PROPERTY_NAME));
+	}
+}
@@ -0,0 +1,139 @@
+package server;
+
+import java.util.Arrays;
+
+import Utility.UtilityProtocol;
+
+/**
+ * Stroke of the player who is drawing, collecting the point sent by the player
+ * and creating one BroadcastFrame for them<br>
+ * The point is saved as the real coordinate, the frame will encode it as difference
+ * from the last point (protocol version 2) or as the old drawing instruction (version 1),
+ * so the style of the stroke must be remembered here
+ * @author Toshiba
+ *
+ */
+public class StrokeFrameBuilder implements UtilityProtocol.StrokeHandler {
+
+	// type of the record inside records array
+	public static final int START = 0; // start, thickness, red, green, blue, x, y
+	public static final int POINT = 1; // point, x, y
+	public static final int END = 2; // end
+
+	// condition of the stroke after the last record (all player already got it)
+	private boolean started = false;
+	private int style[] = {1, 0, 0, 0}; // thickness, red, green, blue
+	private int lastX = 0;
+	private int lastY = 0;
+
+	// condition of the stroke before the first record of the frame
+	private int frameStyle[] = new int[4];
+	private int frameLastX = 0;
+	private int frameLastY = 0;
+
+	// records of the frame that not yet built
+	private int records[] = new int[64];
+	private int recordsLength = 0;
+
+	/**
+	 * Begin new frame, the record before is removed
+	 */
+	public void begin()
+	{
+		System.arraycopy(this.style, 0, this.frameStyle, 0, 4);
+		this.frameLastX = this.lastX;
+		this.frameLastY = this.lastY;
+		this.recordsLength = 0;
+	}
+
+	/**
+	 * Check if the stroke is started and not yet ended
+	 * @return true if the stroke is started
+	 */
+	public boolean isStarted()
+	{
+		return this.started;
+	}
+
+	@Override
+	public void strokeStart(int thickness, int red, int green, int blue, int x, int y)
+	{
+		if (this.started)
+		{
+			// the player forgot to end the stroke before
+			this.strokeEnd();
+		}
+		this.add(START, thickness, red, green, blue, x, y);
+		this.style[0] = thickness;
+		this.style[1] = red;
+		this.style[2] = green;
+		this.style[3] = blue;
+		this.lastX = x;
+		this.lastY = y;
+		this.started = true;
+	}
+
+	@Override
+	public void strokePoint(int x, int y)
+	{
+		if (!this.started)
+		{
+			// the stroke was stopped by other player, the point
+			// start new stroke with the same style
+			this.strokeStart(this.style[0], this.style[1], this.style[2], this.style[3], x, y);
+			return;
+		}
+		this.add(POINT, x, y);
+		this.lastX = x;
+		this.lastY = y;
+	}
+
+	@Override
+	public void strokeEnd()
+	{
+		if (this.started)
+		{
+			this.add(END);
+			this.started = false;
+		}
+	}
+
+	/**
+	 * Mark the stroke as ended without sending the end of the stroke
+	 * (end of the stroke already sent by other way or the turn is changed)
+	 */
+	public void reset()
+	{
+		this.started = false;
+	}
+
+	/**
+	 * Create the frame for all record since begin
+	 * @return the frame, null if there's no record
+	 */
+	public BroadcastFrame build()
+	{
+		if (this.recordsLength == 0)
+		{
+			return null;
+		}
+		return BroadcastFrame.stroke(
+				Arrays.copyOf(this.records, this.recordsLength),
+				this.frameStyle.clone(), this.frameLastX, this.frameLastY
+		);
+	}
+
+	/**
+	 * Add one record to the records array
+	 * @param record : type of the record followed by its data
+	 */
+	private void add(int... record)
+	{
+		if (this.recordsLength + record.length > this.records.length)
+		{
+			this.records = Arrays.copyOf(this.records, this.records.length * 2 + record.length);
+		}
+		System.arraycopy(record, 0, this.records, this.recordsLength, record.length);
+		this.recordsLength += record.length;
+	}
+}
@@ -0,0 +1,150 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Transport accepting the player from the network, one thread wait for the new
+ * player and create their connection with the IO model chosen when the
+ * transport is created (see ServerIOMode)
+ * @author Toshiba
+ *
+ */
+public class TcpTransport implements GameTransport, Runnable {
+
+	// socket connection variable, used to make server socket
+	private int port;
+	private ServerSocket serverSocket;
+
+	// IO model for the player connection, if NIO the server socket is opened from
+	// serverSocketChannel and all player handled by eventLoopGroup
+	private ServerIOMode ioMode;
+	private ServerSocketChannel serverSocketChannel = null;
+	private NioEventLoopGroup eventLoopGroup = null;
+
+	// the engine used by the player, set when the transport is started
+	private GameEngine engine;
+
+	/**
+	 * Constructor for the transport, IO model is taken from system property skribbl.server.mode
+	 * @param port : port for ServerSocket
+	 * @throws IOException if it failed to make the server (port already used)
+	 */
+	public TcpTransport(int port) throws IOException
+	{
+		this(port, ServerIOMode.fromSystemProperty());
+	}
+
+	/**
+	 * Constructor for the transport, the port is opened here so the error could be
+	 * shown before the engine is started
+	 * @param port : port for ServerSocket
+	 * @param ioMode : IO model used to handle the player connection
+	 * @throws IOException if it failed to make the server (port already used)
+	 */
+	public TcpTransport(int port, ServerIOMode ioMode) throws IOException
+	{
+		this.port = port;
+		this.ioMode = ioMode;
+
+		if (this.ioMode == ServerIOMode.NIO)
+		{
+			this.serverSocketChannel = ServerSocketChannel.open();
+			this.serverSocketChannel.bind(new InetSocketAddress(this.port));
+			this.serverSocket = this.serverSocketChannel.socket();
+			this.eventLoopGroup = new NioEventLoopGroup("TcpTransport-" + this.port);
+		}
+		else
+		{
+			this.serverSocket = new ServerSocket(this.port);
+		}
+	}
+
+	@Override
+	public void start(GameEngine engine)
+	{
+		this.engine = engine;
+		new Thread(this, engine.getName() + "-accept-" + this.port).start();
+	}
+
+	@Override
+	public void run()
+	{
+		RoomRegistry roomRegistry = this.engine.getRoomRegistry();
+		try
+		{
+			// creating new connection for every player until the server socket is closed
+			while (true)
+			{
+				if (this.ioMode == ServerIOMode.NIO)
+				{
+					// the connection is registered to one of the event loop, if the player
+					// can't join the room, the event loop will send denied join instruction
+					new NioClientConnection(this.serverSocketChannel.accept(), this.eventLoopGroup.next(), roomRegistry);
+					continue;
+				}
+
+				// creating the thread, if the player can't join the room (game already
+				// started) the thread will send denied join instruction
+				ServerClientThread newClient;
+				if (this.ioMode == ServerIOMode.VIRTUAL)
+				{
+					newClient = new ServerClientVirtualThread(this.serverSocket.accept(), roomRegistry);
+				}
+				else
+				{
+					newClient = new ServerClientThread(this.serverSocket.accept(), roomRegistry);
+				}
+				newClient.start();
+			}
+		}
+		catch (IOException e)
+		{
+			// the server socket is closed
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			this.serverSocket.close();
+		}
+		catch (IOException e)
+		{
+
+		}
+		if (this.eventLoopGroup != null)
+		{
+			// event loop will stop after all player disconnected
+			this.eventLoopGroup.shutdownGracefully();
+		}
+	}
+
+	/**
+	 * Get the port used by this transport
+	 * @return the port
+	 */
+	public int getPort()
+	{
+		return this.port;
+	}
+
+	/**
+	 * Get the IO model used by this transport
+	 * @return the IO model
+	 */
+	public ServerIOMode getIOMode()
+	{
+		return this.ioMode;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.ioMode + " " + this.serverSocket;
+	}
+}